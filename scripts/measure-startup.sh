@@ -0,0 +1,53 @@
+#!/usr/bin/env bash
+# Time to first request and resident memory (VmRSS of the JVM) of the service image, compared with the image
+# built from an earlier Dockerfile on the same sources. Needs Docker and curl.
+#
+#   scripts/measure-startup.sh [runs]
+#
+# BASELINE_REF picks the baseline Dockerfile, by default the one before its last change.
+set -euo pipefail
+
+RUNS=${1:-5}
+ROOT=$(cd "$(dirname "$0")/.." && pwd)
+BASELINE_REF=${BASELINE_REF:-$(git -C "$ROOT" rev-list -n 1 HEAD -- Dockerfile)^}
+NETWORK=es-transazioni-measure
+PORT=${PORT:-18080}
+
+cleanup() {
+    docker rm -f es-measure-app es-measure-db >/dev/null 2>&1 || true
+    docker network rm "$NETWORK" >/dev/null 2>&1 || true
+}
+trap cleanup EXIT
+
+echo "Building es-transazioni:current and es-transazioni:baseline ($BASELINE_REF)"
+docker build -q -t es-transazioni:current "$ROOT" >/dev/null
+git -C "$ROOT" show "$BASELINE_REF:Dockerfile" | docker build -q -t es-transazioni:baseline -f - "$ROOT" >/dev/null
+
+docker network create "$NETWORK" >/dev/null
+docker run -d --name es-measure-db --network "$NETWORK" --network-alias db \
+    -e POSTGRES_DB=transactions -e POSTGRES_USER=user -e POSTGRES_PASSWORD=password postgres:15 >/dev/null
+until docker exec es-measure-db pg_isready -U user -d transactions >/dev/null 2>&1; do sleep 0.5; done
+
+# Prints "<milliseconds to the first answered listing> <RSS in MB>" for one start of the image
+measure() {
+    local start end rss
+    start=$(date +%s%N)
+    docker run -d --name es-measure-app --network "$NETWORK" -p "$PORT:8080" "$1" >/dev/null
+    until curl -fs -o /dev/null "http://localhost:$PORT/api/transactions?size=1"; do sleep 0.05; done
+    end=$(date +%s%N)
+    rss=$(docker exec es-measure-app awk '/^VmRSS/ {print $2}' /proc/1/status)
+    docker rm -f es-measure-app >/dev/null
+    echo "$(( (end - start) / 1000000 )) $(( rss / 1024 ))"
+}
+
+# The first start runs the migrations; it is not measured
+measure es-transazioni:current >/dev/null
+
+printf '%-26s %12s %12s\n' image 'first req ms' 'RSS MB'
+for image in es-transazioni:baseline es-transazioni:current; do
+    results=$(for _ in $(seq "$RUNS"); do measure "$image"; done)
+    # medians over the runs
+    millis=$(echo "$results" | awk '{print $1}' | sort -n | awk '{a[NR]=$1} END {print a[int((NR+1)/2)]}')
+    megabytes=$(echo "$results" | awk '{print $2}' | sort -n | awk '{a[NR]=$1} END {print a[int((NR+1)/2)]}')
+    printf '%-26s %12s %12s\n' "$image" "$millis" "$megabytes"
+done
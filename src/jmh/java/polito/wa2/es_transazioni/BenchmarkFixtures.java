@@ -0,0 +1,41 @@
+package polito.wa2.es_transazioni;
+
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// Realistic transactions shared by the benchmarks
+public final class BenchmarkFixtures {
+
+    private static final String[] CURRENCIES = {"EUR", "USD", "GBP", "CHF"};
+
+    // Timestamps just before startup: valid (@PastOrPresent), in a partition the app has created and never in
+    // a month old enough to be archived, whatever the date the benchmarks run on
+    private static final LocalDateTime RECENT = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+
+    private BenchmarkFixtures() {}
+
+    public static TransactionDTO transaction(int i) {
+        TransactionDTO dto = new TransactionDTO();
+        dto.setId((long) i);
+        dto.setAmount(BigDecimal.valueOf(1_000 + i % 10_000, 2));
+        dto.setCurrency(CURRENCIES[i % CURRENCIES.length]);
+        dto.setDescription("Pagamento fattura n. " + i + " - servizi di consulenza");
+        dto.setTimestamp(RECENT.minusMinutes(i));
+        dto.setSenderAccount("IT60X0542811101000000" + String.format("%06d", i % 1_000_000));
+        dto.setReceiverAccount("DE89370400440532013000");
+        return dto;
+    }
+
+    public static List<TransactionDTO> transactions(int count) {
+        List<TransactionDTO> transactions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            transactions.add(transaction(i));
+        }
+        return transactions;
+    }
+}
@@ -0,0 +1,39 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.*;
+import polito.wa2.es_transazioni.BenchmarkFixtures;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Serialization of a listing page, with the same mapper settings Spring Boot uses
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransactionJsonBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private ObjectWriter writer;
+    private List<TransactionDTO> page;
+
+    @Setup
+    public void setup() {
+        writer = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writer();
+        page = BenchmarkFixtures.transactions(size);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws JsonProcessingException {
+        return writer.writeValueAsBytes(page);
+    }
+}
@@ -0,0 +1,48 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+import polito.wa2.es_transazioni.BenchmarkFixtures;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Bean Validation of the @Pattern (IBAN, currency) and other constraints of TransactionDTO
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionValidationBenchmark {
+
+    private ValidatorFactory factory;
+    private Validator validator;
+    private TransactionDTO valid;
+    private TransactionDTO invalid;
+
+    @Setup
+    public void setup() {
+        factory = Validation.buildDefaultValidatorFactory();
+        validator = factory.getValidator();
+        valid = BenchmarkFixtures.transaction(42);
+        invalid = BenchmarkFixtures.transaction(43);
+        invalid.setCurrency("euro");
+        invalid.setSenderAccount("not-an-iban");
+    }
+
+    @TearDown
+    public void tearDown() {
+        factory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<TransactionDTO>> validTransaction() {
+        return validator.validate(valid);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<TransactionDTO>> invalidTransaction() {
+        return validator.validate(invalid);
+    }
+}
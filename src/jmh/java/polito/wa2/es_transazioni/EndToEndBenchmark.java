@@ -0,0 +1,89 @@
+package polito.wa2.es_transazioni;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Whole request path (HTTP, validation, service, JPA, Postgres, serialization) against a Postgres container.
+// Needs Docker: ./gradlew jmh -Pjmh.includes=EndToEnd
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+public class EndToEndBenchmark {
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext application;
+    private HttpClient client;
+    private String baseUrl;
+    private String body;
+    private final AtomicInteger ids = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        postgres = new PostgreSQLContainer<>("postgres:15");
+        postgres.start();
+        application = SpringApplication.run(EsTransazioniApplication.class,
+                "--server.port=0",
+                "--spring.datasource.url=" + postgres.getJdbcUrl() + "&reWriteBatchedInserts=true",
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword(),
+                "--spring.docker.compose.enabled=false",
+                "--spring.jpa.show-sql=false",
+                // create() posts the same transfer over and over
+                "--app.rules.enabled=false",
+                "--app.partitions.archive-after-months=0",
+                "--logging.level.polito.wa2.es_transazioni=WARN");
+        int port = ((ServletWebServerApplicationContext) application).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port + "/api/transactions";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        body = new ObjectMapper().findAndRegisterModules()
+                .disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .writeValueAsString(BenchmarkFixtures.transaction(0));
+
+        // enough rows for the listing to be meaningful
+        for (int i = 0; i < 1_000; i++) {
+            create();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public int create() throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build());
+    }
+
+    @Benchmark
+    public int getById() throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/" + (1 + ids.incrementAndGet() % 1_000))).GET().build());
+    }
+
+    @Benchmark
+    public int listFiltered() throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "?size=20&currency=EUR&minAmount=20")).GET().build());
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,92 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import polito.wa2.es_transazioni.EsTransazioniApplication;
+import polito.wa2.es_transazioni.entity.Transaction;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// A 100-row listing page read as managed entities in a read-write transaction (the old path) and as
+// TransactionRow projections in a read-only one. Allocation per page is the interesting number:
+// ./gradlew jmh -Pjmh.includes=TransactionReadPath -Pjmh.profilers=gc  (see gc.alloc.rate.norm)
+// Needs Docker.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class TransactionReadPathBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final Sort SORT = Sort.by("timestamp", "id").descending();
+    private static final Specification<Transaction> SPEC = TransactionSpecifications.filter("EUR", null, null, null, null);
+
+    private PostgreSQLContainer<?> postgres;
+    private ConfigurableApplicationContext application;
+    private TransactionRepository repository;
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        postgres = new PostgreSQLContainer<>("postgres:15");
+        postgres.start();
+        application = SpringApplication.run(EsTransazioniApplication.class,
+                "--server.port=0",
+                "--spring.datasource.url=" + postgres.getJdbcUrl(),
+                "--spring.datasource.username=" + postgres.getUsername(),
+                "--spring.datasource.password=" + postgres.getPassword(),
+                "--spring.docker.compose.enabled=false",
+                "--spring.jpa.show-sql=false",
+                // the seeded months are old enough to be archived otherwise
+                "--app.partitions.archive-after-months=0",
+                "--logging.level.polito.wa2.es_transazioni=WARN");
+        JdbcTemplate jdbc = application.getBean(JdbcTemplate.class);
+        jdbc.execute("""
+                SELECT create_transactions_partition(month::date)
+                FROM generate_series(DATE '2023-01-01', DATE '2023-06-01', INTERVAL '1 month') AS month
+                """);
+        jdbc.execute("""
+                INSERT INTO transactions (id, amount, currency, description, timestamp, sender_account, receiver_account)
+                SELECT g,
+                       (random() * 100000000)::bigint,
+                       (ARRAY['EUR', 'USD', 'GBP', 'CHF'])[1 + g % 4],
+                       'Transaction ' || g,
+                       TIMESTAMP '2023-01-01' + (g * INTERVAL '5 minutes'),
+                       'IT60X05428111010000' || lpad((g % 20000)::text, 8, '0'),
+                       'DE89370400440' || lpad(((g * 7) % 20000)::text, 9, '0')
+                FROM generate_series(1, 50000) AS g
+                """);
+        repository = application.getBean(TransactionRepository.class);
+        PlatformTransactionManager transactionManager = application.getBean(PlatformTransactionManager.class);
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        application.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public List<Transaction> entities() {
+        // the commit flushes, so every loaded entity is dirty-checked against its snapshot
+        return readWrite.execute(status -> repository.findBy(SPEC, query -> query.sortBy(SORT).limit(PAGE_SIZE).all()));
+    }
+
+    @Benchmark
+    public List<TransactionRow> projections() {
+        return readOnly.execute(status -> repository.findRows(SPEC, SORT, 0, PAGE_SIZE));
+    }
+}
@@ -0,0 +1,29 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.jpa.domain.Specification;
+import polito.wa2.es_transazioni.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Cost of building the filter Specification of a listing request (before any query runs)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionSpecificationsBenchmark {
+
+    private static final BigDecimal MIN_AMOUNT = new BigDecimal("10.00");
+    private static final BigDecimal MAX_AMOUNT = new BigDecimal("500.00");
+
+    @Benchmark
+    public Specification<Transaction> noFilters() {
+        return TransactionSpecifications.filter(null, null, null, null, null);
+    }
+
+    @Benchmark
+    public Specification<Transaction> allFilters() {
+        return TransactionSpecifications.filter("EUR", MIN_AMOUNT, MAX_AMOUNT,
+                "2024-01-01T00:00:00+01:00", "2024-12-31T23:59:59");
+    }
+}
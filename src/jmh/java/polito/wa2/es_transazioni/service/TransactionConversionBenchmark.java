@@ -0,0 +1,37 @@
+package polito.wa2.es_transazioni.service;
+
+import org.openjdk.jmh.annotations.*;
+import polito.wa2.es_transazioni.BenchmarkFixtures;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+import polito.wa2.es_transazioni.entity.Transaction;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionConversionBenchmark {
+
+    private TransactionService service;
+    private TransactionDTO dto;
+    private Transaction entity;
+
+    @Setup
+    public void setup() {
+        // the conversions touch none of the collaborators
+        service = new TransactionService(null, null, null, null, null, null, null, null, null, 50, 10_000, 1_000, 1_000);
+        dto = BenchmarkFixtures.transaction(42);
+        entity = service.convertToEntity(dto);
+        entity.setId(42L);
+    }
+
+    @Benchmark
+    public TransactionDTO convertToDTO() {
+        return service.convertToDTO(entity);
+    }
+
+    @Benchmark
+    public Transaction convertToEntity() {
+        return service.convertToEntity(dto);
+    }
+}
@@ -0,0 +1,43 @@
+package polito.wa2.es_transazioni.service.rules;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Latency the rules add to a POST: duplicate check plus sender velocity, over 10k senders, with limits
+// high enough that nothing is rejected. Run with 1 and with many threads (-t) to see lock contention.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TransactionRuleEngineBenchmark {
+
+    private static final int SENDERS = 10_000;
+
+    private TransactionRuleEngine engine;
+    private String[] senders;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        engine = new TransactionRuleEngine(List.of(
+                new DuplicateTransferRule(Duration.ofMinutes(1), 1_000_000),
+                new SenderVelocityRule(Duration.ofHours(1), 60, Integer.MAX_VALUE, new BigDecimal("1000000000000"), 1_000_000)));
+        senders = new String[SENDERS];
+        for (int i = 0; i < SENDERS; i++) {
+            senders[i] = String.format("IT60X05428111010000%08d", i);
+        }
+    }
+
+    @Benchmark
+    public Transfer check() {
+        long n = sequence.incrementAndGet();
+        // the amount changes with every call, so no transfer is a duplicate
+        Transfer transfer = new Transfer(senders[(int) (n % SENDERS)], "DE89370400440532013000", "EUR", n);
+        engine.check(transfer, System.currentTimeMillis());
+        return transfer;
+    }
+}
@@ -0,0 +1,37 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+public class AccountBalanceDTO {
+
+    private String account;
+
+    // currency -> received minus sent
+    private Map<String, BigDecimal> balances;
+
+    public AccountBalanceDTO() {}
+
+    public AccountBalanceDTO(String account, Map<String, BigDecimal> balances) {
+        this.account = account;
+        this.balances = balances;
+    }
+
+    // Getters and Setters
+
+    public String getAccount() {
+        return account;
+    }
+
+    public void setAccount(String account) {
+        this.account = account;
+    }
+
+    public Map<String, BigDecimal> getBalances() {
+        return balances;
+    }
+
+    public void setBalances(Map<String, BigDecimal> balances) {
+        this.balances = balances;
+    }
+}
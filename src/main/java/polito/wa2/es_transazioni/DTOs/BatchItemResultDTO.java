@@ -0,0 +1,68 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.util.Map;
+
+public class BatchItemResultDTO {
+
+    public enum Status { CREATED, REJECTED }
+
+    private int index;
+
+    private Status status;
+
+    private Long id;
+
+    private Map<String, String> errors;
+
+    public BatchItemResultDTO() {}
+
+    public static BatchItemResultDTO created(int index, Long id) {
+        BatchItemResultDTO result = new BatchItemResultDTO();
+        result.setIndex(index);
+        result.setStatus(Status.CREATED);
+        result.setId(id);
+        return result;
+    }
+
+    public static BatchItemResultDTO rejected(int index, Map<String, String> errors) {
+        BatchItemResultDTO result = new BatchItemResultDTO();
+        result.setIndex(index);
+        result.setStatus(Status.REJECTED);
+        result.setErrors(errors);
+        return result;
+    }
+
+    // Getters and Setters
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<String, String> errors) {
+        this.errors = errors;
+    }
+}
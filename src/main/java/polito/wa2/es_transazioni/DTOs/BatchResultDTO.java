@@ -0,0 +1,57 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.util.List;
+
+public class BatchResultDTO {
+
+    private int received;
+
+    private int created;
+
+    private int rejected;
+
+    private List<BatchItemResultDTO> items;
+
+    public BatchResultDTO() {}
+
+    public BatchResultDTO(List<BatchItemResultDTO> items) {
+        this.items = items;
+        this.received = items.size();
+        this.created = (int) items.stream().filter(i -> i.getStatus() == BatchItemResultDTO.Status.CREATED).count();
+        this.rejected = this.received - this.created;
+    }
+
+    // Getters and Setters
+
+    public int getReceived() {
+        return received;
+    }
+
+    public void setReceived(int received) {
+        this.received = received;
+    }
+
+    public int getCreated() {
+        return created;
+    }
+
+    public void setCreated(int created) {
+        this.created = created;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<BatchItemResultDTO> getItems() {
+        return items;
+    }
+
+    public void setItems(List<BatchItemResultDTO> items) {
+        this.items = items;
+    }
+}
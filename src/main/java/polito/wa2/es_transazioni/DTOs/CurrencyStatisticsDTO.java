@@ -0,0 +1,81 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+public class CurrencyStatisticsDTO {
+
+    private String currency;
+
+    private long count;
+
+    private BigDecimal total;
+
+    private BigDecimal min;
+
+    private BigDecimal max;
+
+    private BigDecimal average;
+
+    public CurrencyStatisticsDTO() {}
+
+    public CurrencyStatisticsDTO(String currency, long count, BigDecimal total, BigDecimal min, BigDecimal max) {
+        this.currency = currency;
+        this.count = count;
+        this.total = total;
+        this.min = min;
+        this.max = max;
+        // rounded to the decimals of the total, i.e. of the currency
+        this.average = count == 0 ? null : total.divide(BigDecimal.valueOf(count), total.scale(), RoundingMode.HALF_EVEN);
+    }
+
+    // Getters and Setters
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+
+    public BigDecimal getMin() {
+        return min;
+    }
+
+    public void setMin(BigDecimal min) {
+        this.min = min;
+    }
+
+    public BigDecimal getMax() {
+        return max;
+    }
+
+    public void setMax(BigDecimal max) {
+        this.max = max;
+    }
+
+    public BigDecimal getAverage() {
+        return average;
+    }
+
+    public void setAverage(BigDecimal average) {
+        this.average = average;
+    }
+}
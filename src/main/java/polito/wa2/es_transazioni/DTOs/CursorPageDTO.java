@@ -0,0 +1,36 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.util.List;
+
+public class CursorPageDTO {
+
+    private List<TransactionDTO> content;
+
+    // null when there are no more rows after this page
+    private String nextCursor;
+
+    public CursorPageDTO() {}
+
+    public CursorPageDTO(List<TransactionDTO> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+
+    public List<TransactionDTO> getContent() {
+        return content;
+    }
+
+    public void setContent(List<TransactionDTO> content) {
+        this.content = content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
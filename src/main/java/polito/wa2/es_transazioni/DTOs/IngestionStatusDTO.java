@@ -0,0 +1,61 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.util.Map;
+
+public class IngestionStatusDTO {
+
+    // REJECTED: failed validation or a rule; FAILED: could not be written and was dead-lettered
+    public enum Status { ACCEPTED, PERSISTED, REJECTED, FAILED }
+
+    private String trackingId;
+
+    private Status status;
+
+    // set once the transaction has been written to the database
+    private Long transactionId;
+
+    private Map<String, String> errors;
+
+    public IngestionStatusDTO() {}
+
+    public IngestionStatusDTO(String trackingId, Status status, Long transactionId, Map<String, String> errors) {
+        this.trackingId = trackingId;
+        this.status = status;
+        this.transactionId = transactionId;
+        this.errors = errors;
+    }
+
+    // Getters and Setters
+
+    public String getTrackingId() {
+        return trackingId;
+    }
+
+    public void setTrackingId(String trackingId) {
+        this.trackingId = trackingId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(Long transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<String, String> errors) {
+        this.errors = errors;
+    }
+}
@@ -1,6 +1,10 @@
 package polito.wa2.es_transazioni.DTOs;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.validation.constraints.*;
+import polito.wa2.es_transazioni.entity.Amounts;
+
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 public class TransactionDTO {
@@ -8,8 +12,11 @@ public class TransactionDTO {
     private Long id;
 
     @NotNull(message = "Amount is required")
-    @DecimalMin(value = "0.01", message = "Amount must be greater than zero")
-    private Double amount;
+    @DecimalMin(value = "0", inclusive = false, message = "Amount must be greater than zero")
+    @Digits(integer = Amounts.MAX_INTEGER_DIGITS, fraction = Amounts.SCALE,
+            message = "Amount cannot have more than " + Amounts.MAX_INTEGER_DIGITS + " integer digits or " + Amounts.SCALE + " decimals")
+    // exact decimal, with at most the currency's number of decimals
+    private BigDecimal amount;
 
     @NotBlank(message = "Currency is required")
     @Pattern(regexp = "^[A-Z]{3}$", message = "Currency must be a valid ISO 4217 code")
@@ -37,6 +44,13 @@ public class TransactionDTO {
     @Size(max = 500, message = "Description cannot exceed 500 characters")
     private String description;
 
+    // HTTP validators (ETag / Last-Modified), sent as headers rather than in the body
+    @JsonIgnore
+    private long version;
+
+    @JsonIgnore
+    private LocalDateTime lastModified;
+
     // Getters and Setters
 
     public Long getId() {
@@ -47,11 +61,11 @@ public class TransactionDTO {
         this.id = id;
     }
 
-    public Double getAmount() {
+    public BigDecimal getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(BigDecimal amount) {
         this.amount = amount;
     }
 
@@ -94,4 +108,20 @@ public class TransactionDTO {
     public String getDescription() {
         return description;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(LocalDateTime lastModified) {
+        this.lastModified = lastModified;
+    }
 }
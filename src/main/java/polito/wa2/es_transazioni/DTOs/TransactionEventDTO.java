@@ -0,0 +1,70 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.time.LocalDateTime;
+
+public class TransactionEventDTO {
+
+    // position in the stream; resume with after=<sequence> or Last-Event-ID
+    private long sequence;
+
+    private String type;
+
+    private Long transactionId;
+
+    // state after the change, or the deleted transaction; null when all transactions were deleted
+    private TransactionDTO transaction;
+
+    private LocalDateTime createdAt;
+
+    public TransactionEventDTO() {}
+
+    public TransactionEventDTO(long sequence, String type, Long transactionId, TransactionDTO transaction, LocalDateTime createdAt) {
+        this.sequence = sequence;
+        this.type = type;
+        this.transactionId = transactionId;
+        this.transaction = transaction;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(Long transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public TransactionDTO getTransaction() {
+        return transaction;
+    }
+
+    public void setTransaction(TransactionDTO transaction) {
+        this.transaction = transaction;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
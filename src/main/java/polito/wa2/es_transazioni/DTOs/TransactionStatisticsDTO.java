@@ -0,0 +1,61 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.util.List;
+
+public class TransactionStatisticsDTO {
+
+    public enum Source { ROLLUP, TRANSACTIONS }
+
+    // whether the figures come from the hourly rollups or straight from the transactions table
+    private Source source;
+
+    private String granularity;
+
+    private List<CurrencyStatisticsDTO> currencies;
+
+    private List<VolumeBucketDTO> volume;
+
+    public TransactionStatisticsDTO() {}
+
+    public TransactionStatisticsDTO(Source source, String granularity,
+                                    List<CurrencyStatisticsDTO> currencies, List<VolumeBucketDTO> volume) {
+        this.source = source;
+        this.granularity = granularity;
+        this.currencies = currencies;
+        this.volume = volume;
+    }
+
+    // Getters and Setters
+
+    public Source getSource() {
+        return source;
+    }
+
+    public void setSource(Source source) {
+        this.source = source;
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(String granularity) {
+        this.granularity = granularity;
+    }
+
+    public List<CurrencyStatisticsDTO> getCurrencies() {
+        return currencies;
+    }
+
+    public void setCurrencies(List<CurrencyStatisticsDTO> currencies) {
+        this.currencies = currencies;
+    }
+
+    public List<VolumeBucketDTO> getVolume() {
+        return volume;
+    }
+
+    public void setVolume(List<VolumeBucketDTO> volume) {
+        this.volume = volume;
+    }
+}
@@ -0,0 +1,58 @@
+package polito.wa2.es_transazioni.DTOs;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+public class VolumeBucketDTO {
+
+    private LocalDateTime bucketStart;
+
+    private String currency;
+
+    private long count;
+
+    private BigDecimal total;
+
+    public VolumeBucketDTO() {}
+
+    public VolumeBucketDTO(LocalDateTime bucketStart, String currency, long count, BigDecimal total) {
+        this.bucketStart = bucketStart;
+        this.currency = currency;
+        this.count = count;
+        this.total = total;
+    }
+
+    // Getters and Setters
+
+    public LocalDateTime getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(LocalDateTime bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public String getCurrency() {
+        return currency;
+    }
+
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    public void setTotal(BigDecimal total) {
+        this.total = total;
+    }
+}
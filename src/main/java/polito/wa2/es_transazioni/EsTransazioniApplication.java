@@ -2,8 +2,12 @@ package polito.wa2.es_transazioni;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableCaching
+@EnableScheduling
 public class EsTransazioniApplication {
     public static void main(String[] args) {
         SpringApplication.run(EsTransazioniApplication.class, args);
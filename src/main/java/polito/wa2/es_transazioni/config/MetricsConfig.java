@@ -0,0 +1,95 @@
+package polito.wa2.es_transazioni.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.lang.Nullable;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+// Splits the time of a request into its phases, next to the http.server.requests timer:
+// transaction.http.validation   @Valid on request bodies
+// transaction.http.serialization JSON reading and writing, tagged with direction
+// transaction.service            every TransactionService / TransactionStatisticsService method (@Timed)
+// transaction.repository         every repository call, i.e. the database (RepositoryMetricsAspect)
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    private final MeterRegistry registry;
+    private final ObjectProvider<LocalValidatorFactoryBean> validator;
+
+    public MetricsConfig(MeterRegistry registry, ObjectProvider<LocalValidatorFactoryBean> validator) {
+        this.registry = registry;
+        this.validator = validator;
+    }
+
+    // Makes @Timed work on any bean
+    @Bean
+    public TimedAspect timedAspect() {
+        return new TimedAspect(registry);
+    }
+
+    // Replaces Boot's default JSON converter, same ObjectMapper, with timers around reads and writes
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        Timer read = Timer.builder("transaction.http.serialization").tag("direction", "read").register(registry);
+        Timer write = Timer.builder("transaction.http.serialization").tag("direction", "write").register(registry);
+
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+                Timer.Sample sample = Timer.start(registry);
+                try {
+                    return super.read(type, contextClass, inputMessage);
+                } finally {
+                    sample.stop(read);
+                }
+            }
+
+            @Override
+            protected void writeInternal(Object object, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+                Timer.Sample sample = Timer.start(registry);
+                try {
+                    super.writeInternal(object, type, outputMessage);
+                } finally {
+                    sample.stop(write);
+                }
+            }
+        };
+    }
+
+    // Validator used by Spring MVC for @Valid arguments
+    @Override
+    public Validator getValidator() {
+        Timer timer = Timer.builder("transaction.http.validation").register(registry);
+        return new SmartValidator() {
+            @Override
+            public boolean supports(Class<?> clazz) {
+                return validator.getObject().supports(clazz);
+            }
+
+            @Override
+            public void validate(Object target, Errors errors) {
+                timer.record(() -> validator.getObject().validate(target, errors));
+            }
+
+            @Override
+            public void validate(Object target, Errors errors, Object... validationHints) {
+                timer.record(() -> validator.getObject().validate(target, errors, validationHints));
+            }
+        };
+    }
+}
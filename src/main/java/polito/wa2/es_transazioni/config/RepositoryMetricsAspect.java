@@ -0,0 +1,54 @@
+package polito.wa2.es_transazioni.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Times every call to a Spring Data repository as transaction.repository{repository, method, exception}
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    private static final String REPOSITORY_PACKAGE = "polito.wa2.es_transazioni.repository";
+
+    private final MeterRegistry registry;
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    public RepositoryMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable ex) {
+            exception = ex.getClass().getSimpleName();
+            throw ex;
+        } finally {
+            sample.stop(Timer.builder("transaction.repository")
+                    .tag("repository", repositoryName(joinPoint.getThis().getClass()))
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(registry));
+        }
+    }
+
+    // Repositories are JDK proxies: name them after our interface they implement
+    private String repositoryName(Class<?> proxyClass) {
+        return repositoryNames.computeIfAbsent(proxyClass, type -> Arrays.stream(type.getInterfaces())
+                .filter(i -> i.getPackageName().equals(REPOSITORY_PACKAGE))
+                .map(Class::getSimpleName)
+                .findFirst()
+                .orElse(type.getSimpleName()));
+    }
+}
@@ -0,0 +1,74 @@
+package polito.wa2.es_transazioni.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import polito.wa2.es_transazioni.DTOs.AccountBalanceDTO;
+import polito.wa2.es_transazioni.DTOs.CursorPageDTO;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+import polito.wa2.es_transazioni.service.AccountBalanceService;
+import polito.wa2.es_transazioni.service.TransactionService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/accounts")
+@Tag(name="Account Statements", description="APIs for the transactions of a single account")
+public class AccountController {
+
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private final TransactionService transactionService;
+    private final AccountBalanceService balanceService;
+    private static final Logger logger = LoggerFactory.getLogger(AccountController.class);
+
+    public AccountController(TransactionService transactionService, AccountBalanceService balanceService) {
+        this.transactionService = transactionService;
+        this.balanceService = balanceService;
+    }
+
+    // Get the transactions of one account
+    @Operation(
+        summary = "Get account transactions",
+        description = "Retrieves the transactions sent and/or received by an account, newest first, " +
+                "at most app.paging.max-size (1000 by default) per page. The cursor of the next page is " +
+                "returned in the X-Next-Cursor header (absent on the last page)."
+    )
+    @ApiResponse(responseCode = "200", description = "Account transactions retrieved successfully")
+    @ApiResponse(responseCode = "400", description = "Invalid direction, size or cursor")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @GetMapping("/{iban}/transactions")
+    public ResponseEntity<List<TransactionDTO>> getAccountTransactions(
+            @PathVariable String iban,
+            @RequestParam(defaultValue = "both") String direction,
+            @RequestParam(defaultValue = "100") int size,
+            @RequestParam(required = false) String cursor
+    ) {
+        logger.info("Retrieving transactions of an account (direction={}, size={})", direction, size);
+        CursorPageDTO result = transactionService.getAccountTransactions(iban, direction, cursor, size);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (result.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, result.getNextCursor());
+        }
+        return response.body(result.getContent());
+    }
+
+    // Get the current balance of one account
+    @Operation(
+        summary = "Get account balance",
+        description = "Returns the running balance (received minus sent) of an account in every currency it has used. " +
+                "It is read from the database (last snapshot plus the changes written since), so it already includes " +
+                "every committed create, update and delete, whichever instance handled it."
+    )
+    @ApiResponse(responseCode = "200", description = "Balance retrieved successfully")
+    @ApiResponse(responseCode = "404", description = "No transactions for the account")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @GetMapping("/{iban}/balance")
+    public ResponseEntity<AccountBalanceDTO> getBalance(@PathVariable String iban) {
+        return ResponseEntity.ok(balanceService.getBalance(iban));
+    }
+}
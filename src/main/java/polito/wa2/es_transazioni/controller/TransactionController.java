@@ -1,52 +1,225 @@
 package polito.wa2.es_transazioni.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import polito.wa2.es_transazioni.DTOs.BatchResultDTO;
+import polito.wa2.es_transazioni.DTOs.CursorPageDTO;
+import polito.wa2.es_transazioni.DTOs.IngestionStatusDTO;
 import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+import polito.wa2.es_transazioni.DTOs.TransactionStatisticsDTO;
+import polito.wa2.es_transazioni.repository.TransactionSpecifications;
+import polito.wa2.es_transazioni.service.AsyncIngestionService;
+import polito.wa2.es_transazioni.service.TransactionArchive;
+import polito.wa2.es_transazioni.service.ExportFormat;
+import polito.wa2.es_transazioni.service.IdempotencyService;
+import polito.wa2.es_transazioni.service.TransactionChangeCounter;
+import polito.wa2.es_transazioni.service.TransactionExportWriter;
 import polito.wa2.es_transazioni.service.TransactionService;
+import polito.wa2.es_transazioni.service.TransactionStatisticsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/transactions")
 @Tag(name="Transaction Management", description="APIs for managing transactions")
 public class TransactionController {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final TransactionService transactionService;
-    private static final Logger logger = LoggerFactory.getLogger(TransactionService.class);
+    private final TransactionStatisticsService statisticsService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionChangeCounter changeCounter;
+    private final TransactionArchive archive;
+    private final ObjectMapper objectMapper;
+    // only present with app.ingestion.async.enabled=true
+    private final AsyncIngestionService asyncIngestionService;
+    private static final Logger logger = LoggerFactory.getLogger(TransactionController.class);
 
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService,
+                                 TransactionStatisticsService statisticsService,
+                                 IdempotencyService idempotencyService,
+                                 TransactionChangeCounter changeCounter,
+                                 TransactionArchive archive,
+                                 ObjectMapper objectMapper,
+                                 ObjectProvider<AsyncIngestionService> asyncIngestionService) {
         this.transactionService = transactionService;
+        this.statisticsService = statisticsService;
+        this.idempotencyService = idempotencyService;
+        this.changeCounter = changeCounter;
+        this.archive = archive;
+        this.objectMapper = objectMapper;
+        this.asyncIngestionService = asyncIngestionService.getIfAvailable();
     }
 
     // Create a new transaction
     @Operation(
         summary = "Create a new transaction",
-        description = "Creates a new transaction with the provided details and returns the created transaction."
+        description = "Creates a new transaction with the provided details and returns the created transaction. " +
+                "With an Idempotency-Key header a retried request returns the originally created transaction " +
+                "(Idempotent-Replayed: true) instead of inserting it again. When asynchronous ingestion is enabled " +
+                "a request without Idempotency-Key is queued and answered with 202 and a tracking id instead."
     )
     @ApiResponse(responseCode = "201", description = "Transaction created successfully")
+    @ApiResponse(responseCode = "202", description = "Transaction accepted for asynchronous ingestion")
     @ApiResponse(responseCode = "400", description = "Invalid input data")
+    @ApiResponse(responseCode = "422", description = "Idempotency-Key already used for a different request")
+    @ApiResponse(responseCode = "429", description = "Ingestion queue full, retry after the Retry-After delay")
     @ApiResponse(responseCode = "500", description = "Internal server error")
     @PostMapping
-    public ResponseEntity<TransactionDTO> createTransaction(@Valid @RequestBody TransactionDTO transaction) {
-        logger.info("Creating a new transaction with the provided details"+ transaction.toString());
-        TransactionDTO createdTransaction = transactionService.createTransaction(transaction);
-        return ResponseEntity.status(201).body(createdTransaction);
+    public ResponseEntity<?> createTransaction(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @Valid @RequestBody TransactionDTO transaction) {
+        logger.info("Creating a new transaction of {} {}", transaction.getAmount(), transaction.getCurrency());
+        // keyed requests must return the created transaction, so they always take the synchronous path
+        if (idempotencyKey == null && asyncIngestionService != null) {
+            IngestionStatusDTO status = asyncIngestionService.accept(transaction);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/transactions/ingestion/" + status.getTrackingId()))
+                    .body(status);
+        }
+        if (idempotencyKey == null) {
+            TransactionDTO createdTransaction = transactionService.createTransaction(transaction);
+            return ResponseEntity.status(201).body(createdTransaction);
+        }
+        IdempotencyService.Outcome<TransactionDTO> outcome = idempotencyService.execute(
+                idempotencyKey, "create", transaction, TransactionDTO.class,
+                () -> transactionService.createTransaction(transaction));
+        return ResponseEntity.status(201)
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(outcome.replayed()))
+                .body(outcome.response());
+    }
+
+    // Create many transactions from a JSON array
+    @Operation(
+        summary = "Create transactions in bulk",
+        description = "Validates each transaction of the JSON array on its own and persists the valid ones in batches. " +
+                "Returns the outcome of every item without failing the whole batch."
+    )
+    @ApiResponse(responseCode = "201", description = "All transactions created successfully")
+    @ApiResponse(responseCode = "207", description = "Some transactions were rejected, see the per-item results")
+    @ApiResponse(responseCode = "400", description = "Invalid input data")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @PostMapping(value = "/batch", consumes = "application/json")
+    public ResponseEntity<BatchResultDTO> createTransactions(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody List<TransactionDTO> transactions) {
+        logger.info("Creating a batch of {} transactions", transactions.size());
+        return createBatch(idempotencyKey, transactions);
+    }
+
+    // Create many transactions from an NDJSON stream (one transaction per line)
+    @Operation(
+        summary = "Create transactions in bulk from NDJSON",
+        description = "Same as the JSON array variant, but reads one transaction per line. The stream is " +
+                "rejected as soon as it holds more lines than the maximum batch size."
+    )
+    @ApiResponse(responseCode = "201", description = "All transactions created successfully")
+    @ApiResponse(responseCode = "207", description = "Some transactions were rejected, see the per-item results")
+    @ApiResponse(responseCode = "400", description = "Invalid input data")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @PostMapping(value = "/batch", consumes = APPLICATION_NDJSON)
+    public ResponseEntity<BatchResultDTO> createTransactionsFromNdjson(
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            InputStream body) throws IOException {
+        int maxBatchSize = transactionService.getMaxBatchSize();
+        List<TransactionDTO> transactions = new ArrayList<>();
+        try (MappingIterator<TransactionDTO> lines = objectMapper.readerFor(TransactionDTO.class).readValues(body)) {
+            while (lines.hasNextValue()) {
+                // stop reading at the first line over the limit instead of buffering the whole stream
+                if (transactions.size() == maxBatchSize) {
+                    throw new IllegalArgumentException("Batch cannot exceed " + maxBatchSize + " transactions");
+                }
+                transactions.add(lines.nextValue());
+            }
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Invalid NDJSON line " + (transactions.size() + 1) + ": " + ex.getOriginalMessage());
+        }
+        logger.info("Creating a batch of {} transactions from NDJSON", transactions.size());
+        return createBatch(idempotencyKey, transactions);
+    }
+
+    private ResponseEntity<BatchResultDTO> createBatch(String idempotencyKey, List<TransactionDTO> transactions) {
+        BatchResultDTO result;
+        boolean replayed = false;
+        if (idempotencyKey == null) {
+            result = transactionService.createTransactions(transactions);
+        } else {
+            IdempotencyService.Outcome<BatchResultDTO> outcome = idempotencyService.execute(
+                    idempotencyKey, "batch", transactions, BatchResultDTO.class,
+                    () -> transactionService.createTransactions(transactions));
+            result = outcome.response();
+            replayed = outcome.replayed();
+        }
+        HttpStatus status = result.getRejected() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(status);
+        if (idempotencyKey != null) {
+            response.header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(replayed));
+        }
+        return response.body(result);
+    }
+
+    // Get the outcome of an asynchronously ingested transaction
+    @Operation(
+        summary = "Get ingestion status",
+        description = "Tells whether a transaction accepted with 202 is still queued, has been persisted " +
+                "(with its id), was rejected (with the validation errors) or failed to be written and was set " +
+                "aside in ingestion_dead_letters (with the database error)."
+    )
+    @ApiResponse(responseCode = "200", description = "Ingestion status retrieved successfully")
+    @ApiResponse(responseCode = "404", description = "Unknown or expired tracking id, or asynchronous ingestion disabled")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @GetMapping("/ingestion/{trackingId}")
+    public ResponseEntity<IngestionStatusDTO> getIngestionStatus(@PathVariable String trackingId) {
+        IngestionStatusDTO status = asyncIngestionService == null ? null : asyncIngestionService.getStatus(trackingId);
+        if (status == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown tracking id " + trackingId);
+        }
+        return ResponseEntity.ok(status);
     }
 
     // Get all transactions with pagination, sorting, and filtering
     @Operation(
         summary = "Get all transactions",
-        description = "Retrieves a list of all transactions."
+        description = "Retrieves a list of all transactions. With paging=keyset the page is located by the opaque " +
+                "cursor instead of the page number, no total count is computed, and the cursor of the next page " +
+                "is returned in the X-Next-Cursor header (absent on the last page). q searches the descriptions " +
+                "(web-search syntax) and combines with the other filters; sortBy=relevance puts the best matches first " +
+                "(offset paging only). size is at most app.paging.max-size (1000 by default) and offset paging " +
+                "cannot go past about two billion rows; keyset paging has no such limit. The ETag changes whenever any " +
+                "transaction is written, so If-None-Match answers 304 without running the query."
     )
     @ApiResponse(responseCode = "200", description = "List of transactions retrieved successfully")
+    @ApiResponse(responseCode = "304", description = "No transaction changed since the ETag in If-None-Match")
+    @ApiResponse(responseCode = "400", description = "Invalid paging, sorting or filter parameters")
     @ApiResponse(responseCode = "500", description = "Internal server error")
     @GetMapping
     public ResponseEntity<List<TransactionDTO>> getAllTransactions(
@@ -55,44 +228,176 @@ public class TransactionController {
             @RequestParam(defaultValue = "timestamp") String sortBy,
             @RequestParam(defaultValue = "desc") String order,
             @RequestParam(required = false) String currency,
-            @RequestParam(required = false) Double minAmount,
-            @RequestParam(required = false) Double maxAmount,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(defaultValue = "offset") String paging,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) String q,
+            WebRequest request
+    ) {
+        // read before the query: a write committing meanwhile changes the ETag of the next request
+        String etag = "\"c" + changeCounter.current() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        logger.info("Retrieving transactions (paging={}, size={}, sortBy={})", paging, size, sortBy);
+        if (paging.equalsIgnoreCase("keyset") || cursor != null) {
+            CursorPageDTO result = transactionService.getTransactionsAfter(cursor, size, sortBy, order, currency, minAmount, maxAmount, startDate, endDate, q);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag);
+            if (result.getNextCursor() != null) {
+                response.header(NEXT_CURSOR_HEADER, result.getNextCursor());
+            }
+            return response.body(result.getContent());
+        }
+        List<TransactionDTO> transactions = transactionService.getAllTransactions(page, size, sortBy, order, currency, minAmount, maxAmount, startDate, endDate, q);
+        return ResponseEntity.ok().eTag(etag).body(transactions);
+    }
+
+    // Export all matching transactions as a stream
+    @Operation(
+        summary = "Export transactions",
+        description = "Streams every transaction matching the filters as NDJSON or CSV, optionally gzipped, " +
+                "ordered by timestamp. The result is never fully loaded in memory."
+    )
+    @ApiResponse(responseCode = "200", description = "Export streamed successfully")
+    @ApiResponse(responseCode = "400", description = "Invalid format or filter parameters")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String q
+    ) {
+        ExportFormat exportFormat = ExportFormat.fromString(format);
+        // validate the filters now, while errors can still become a 400
+        TransactionSpecifications.filter(currency, minAmount, maxAmount, startDate, endDate);
+        logger.info("Exporting transactions as {}{}", exportFormat, gzip ? " (gzip)" : "");
+
+        StreamingResponseBody body = out -> {
+            try (TransactionExportWriter writer = new TransactionExportWriter(objectMapper, exportFormat, gzip, out)) {
+                transactionService.exportTransactions(currency, minAmount, maxAmount, startDate, endDate, q, writer::write);
+            }
+        };
+        String filename = "transactions." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    // Read archived transactions
+    @Operation(
+        summary = "Search archived transactions",
+        description = "Streams the transactions of months moved out of the database (see app.partitions.archive-after-months) " +
+                "that match the filters, as NDJSON or CSV, optionally gzipped. It scans the archive files of the requested " +
+                "dates, so it is much slower than the listing; give a date range whenever possible."
+    )
+    @ApiResponse(responseCode = "200", description = "Archived transactions streamed successfully")
+    @ApiResponse(responseCode = "400", description = "Invalid format or filter parameters")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @GetMapping("/archive")
+    public ResponseEntity<StreamingResponseBody> searchArchive(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate
     ) {
-        logger.info("Retrieving all transactions from the database");
-        List<TransactionDTO> transactions = transactionService.getAllTransactions(page, size, sortBy, order, currency, minAmount, maxAmount, startDate, endDate);
-        return ResponseEntity.ok(transactions);
+        ExportFormat exportFormat = ExportFormat.fromString(format);
+        TransactionSpecifications.filter(currency, minAmount, maxAmount, startDate, endDate);
+        logger.info("Searching archived transactions from {} to {}", startDate, endDate);
+
+        StreamingResponseBody body = out -> {
+            try (TransactionExportWriter writer = new TransactionExportWriter(objectMapper, exportFormat, gzip, out)) {
+                archive.search(currency, minAmount, maxAmount, startDate, endDate, writer::write);
+            }
+        };
+        String filename = "transactions-archive." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    // Get aggregated statistics
+    @Operation(
+        summary = "Get transaction statistics",
+        description = "Returns count, total, min, max and average amount per currency and the volume per hour or day " +
+                "over [startDate, endDate). Without amount filters and with hour-aligned dates the figures are read " +
+                "from the hourly rollups; otherwise they are aggregated from the matching transactions. Either way " +
+                "archived months are not included."
+    )
+    @ApiResponse(responseCode = "200", description = "Statistics computed successfully")
+    @ApiResponse(responseCode = "400", description = "Invalid filter parameters")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @GetMapping("/statistics")
+    public ResponseEntity<TransactionStatisticsDTO> getStatistics(
+            @RequestParam(required = false) String currency,
+            @RequestParam(required = false) BigDecimal minAmount,
+            @RequestParam(required = false) BigDecimal maxAmount,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(defaultValue = "day") String granularity
+    ) {
+        return ResponseEntity.ok(statisticsService.getStatistics(currency, minAmount, maxAmount, startDate, endDate, granularity));
     }
 
     // Get transaction by ID
     @Operation(
         summary = "Get transaction by ID",
-        description = "Retrieves a transaction by its ID."
+        description = "Retrieves a transaction by its ID, with its ETag and Last-Modified. " +
+                "If-None-Match / If-Modified-Since answer 304 without a body when it has not changed. " +
+                "Lookups are cached per instance for a few seconds, so a change made through another instance " +
+                "can take that long to show up here."
     )
     @ApiResponse(responseCode = "200", description = "Transaction retrieved successfully")
+    @ApiResponse(responseCode = "304", description = "Transaction not modified")
     @ApiResponse(responseCode = "404", description = "Transaction not found")
     @ApiResponse(responseCode = "500", description = "Internal server error")
     @GetMapping("/{transactionId}")
-    public ResponseEntity<TransactionDTO> getTransactionById(@PathVariable Long transactionId) {
+    public ResponseEntity<TransactionDTO> getTransactionById(@PathVariable Long transactionId, WebRequest request) {
         TransactionDTO transaction = transactionService.getTransactionById(transactionId);
 
-        return ResponseEntity.ok(transaction);
+        String etag = etag(transaction);
+        long lastModified = lastModified(transaction);
+        if (request.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).lastModified(lastModified).body(transaction);
     }
 
     // Update transaction by ID
     @Operation(
         summary = "Update a transaction",
-        description = "Updates the details of an existing transaction by its ID."
+        description = "Updates the details of an existing transaction by its ID. With If-Match the update only " +
+                "happens if the transaction still has that ETag."
     )
     @ApiResponse(responseCode = "200", description = "Transaction updated successfully")
     @ApiResponse(responseCode = "400", description = "Invalid input data")
     @ApiResponse(responseCode = "404", description = "Transaction not found")
+    @ApiResponse(responseCode = "409", description = "Transaction modified concurrently")
+    @ApiResponse(responseCode = "412", description = "Transaction no longer matches If-Match")
     @ApiResponse(responseCode = "500", description = "Internal server error")
     @PutMapping("/{transactionId}")
-    public ResponseEntity<TransactionDTO> updateTransaction(@PathVariable Long transactionId, @Valid @RequestBody TransactionDTO transactionDetails) {
-        TransactionDTO updatedTransaction = transactionService.updateTransaction(transactionId, transactionDetails);
-        return ResponseEntity.ok(updatedTransaction);
+    public ResponseEntity<TransactionDTO> updateTransaction(
+            @PathVariable Long transactionId,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @Valid @RequestBody TransactionDTO transactionDetails) {
+        TransactionDTO updatedTransaction = transactionService.updateTransaction(
+                transactionId, transactionDetails, expectedVersions(transactionId, ifMatch));
+        return ResponseEntity.ok()
+                .eTag(etag(updatedTransaction))
+                .lastModified(lastModified(updatedTransaction))
+                .body(updatedTransaction);
     }
 
     // Delete all transactions
@@ -121,4 +426,34 @@ public class TransactionController {
         transactionService.deleteTransactionById(transactionId);
         return ResponseEntity.noContent().build();
     }
+
+    // Strong ETag of a transaction: the version changes with every update of the row
+    private static String etag(TransactionDTO transaction) {
+        return "\"" + transaction.getId() + "-" + transaction.getVersion() + "\"";
+    }
+
+    private static long lastModified(TransactionDTO transaction) {
+        return transaction.getLastModified() == null ? -1 : transaction.getLastModified().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    // Versions accepted by If-Match, or null when there is no precondition ("*" or no header).
+    // Weak and foreign tags never match, which ends in a 412 as the strong comparison requires.
+    private static Set<Long> expectedVersions(Long transactionId, String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String prefix = "\"" + transactionId + "-";
+        Set<Long> versions = new HashSet<>();
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith(prefix) && tag.endsWith("\"")) {
+                try {
+                    versions.add(Long.valueOf(tag.substring(prefix.length(), tag.length() - 1)));
+                } catch (NumberFormatException ignored) {
+                    // not one of our tags
+                }
+            }
+        }
+        return versions;
+    }
 }
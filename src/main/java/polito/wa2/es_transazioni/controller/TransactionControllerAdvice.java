@@ -1,14 +1,22 @@
 package polito.wa2.es_transazioni.controller;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.server.ResponseStatusException;
+import polito.wa2.es_transazioni.service.IngestionQueueFullException;
+import polito.wa2.es_transazioni.service.rules.TransactionRejectedException;
 
 import java.net.URI;
 import java.util.HashMap;
@@ -17,12 +25,23 @@ import java.util.Map;
 @RestControllerAdvice
 public class TransactionControllerAdvice {
 
+    private final MeterRegistry registry;
+
+    public TransactionControllerAdvice(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    // transaction.errors{type}, one series per handler below
+    private void count(String type) {
+        Counter.builder("transaction.errors").tag("type", type).register(registry).increment();
+    }
 
     // =========================
     // Validation errors (@Valid)
     // =========================
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ProblemDetail handleValidationErrors(MethodArgumentNotValidException ex) {
+        count("validation");
         Map<String, String> errors = new HashMap<>();
         for (FieldError fieldError : ex.getBindingResult().getFieldErrors()) {
             errors.put(fieldError.getField(), fieldError.getDefaultMessage());
@@ -39,6 +58,7 @@ public class TransactionControllerAdvice {
     // =========================
     @ExceptionHandler(HttpMessageNotReadableException.class)
     public ProblemDetail handleInvalidJson(HttpMessageNotReadableException ex) {
+        count("invalid-json");
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
         pd.setTitle("Invalid input data");
         pd.setDetail(ex.getMostSpecificCause().getMessage());
@@ -52,6 +72,7 @@ public class TransactionControllerAdvice {
     // =========================
     @ExceptionHandler(MethodArgumentTypeMismatchException.class)
     public ProblemDetail handleTypeMismatch(MethodArgumentTypeMismatchException ex) {
+        count("type-mismatch");
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
         pd.setTitle("Type mismatch error");
         pd.setDetail("Parameter '" + ex.getName() + "' should be of type '" +
@@ -65,6 +86,7 @@ public class TransactionControllerAdvice {
     // =========================
     @ExceptionHandler(IllegalArgumentException.class)
     public ProblemDetail handleIllegalArgument(IllegalArgumentException ex) {
+        count("invalid-argument");
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.BAD_REQUEST);
         pd.setTitle("Invalid argument");
         pd.setDetail(ex.getMessage());
@@ -72,11 +94,64 @@ public class TransactionControllerAdvice {
         return pd;
     }
 
+    // =========================
+    // Errors raised with an explicit status (not found, conflicts...)
+    // =========================
+    @ExceptionHandler(ResponseStatusException.class)
+    public ProblemDetail handleResponseStatus(ResponseStatusException ex) {
+        count("status-" + ex.getStatusCode().value());
+        // status and reason are already in the body, see ErrorResponse
+        return ex.getBody();
+    }
+
+    // =========================
+    // Backpressure from the asynchronous ingestion queue
+    // =========================
+    @ExceptionHandler(IngestionQueueFullException.class)
+    public ResponseEntity<ProblemDetail> handleQueueFull(IngestionQueueFullException ex) {
+        count("queue-full");
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.TOO_MANY_REQUESTS);
+        pd.setTitle("Ingestion queue full");
+        pd.setDetail(ex.getMessage());
+        pd.setType(URI.create("https://example.org/ingestion-queue-full-error"));
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(pd);
+    }
+
+    // =========================
+    // Transactions refused by a fraud/velocity rule
+    // =========================
+    @ExceptionHandler(TransactionRejectedException.class)
+    public ProblemDetail handleRejected(TransactionRejectedException ex) {
+        count("rule-" + ex.getRule());
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.UNPROCESSABLE_ENTITY);
+        pd.setTitle("Transaction rejected");
+        pd.setDetail(ex.getMessage());
+        pd.setType(URI.create("https://example.org/transaction-rejected-error"));
+        pd.setProperty("rule", ex.getRule());
+        return pd;
+    }
+
+    // =========================
+    // Concurrent updates of the same row (@Version)
+    // =========================
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ProblemDetail handleOptimisticLock(OptimisticLockingFailureException ex) {
+        count("conflict");
+        ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.CONFLICT);
+        pd.setTitle("Concurrent modification");
+        pd.setDetail("The transaction was modified by another request. Fetch it again and retry.");
+        pd.setType(URI.create("https://example.org/concurrent-modification-error"));
+        return pd;
+    }
+
     // =========================
     // Database errors
     // =========================
     @ExceptionHandler(DataAccessException.class)
     public ProblemDetail handleDataAccessException(DataAccessException ex) {
+        count("database");
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.SERVICE_UNAVAILABLE);
         pd.setTitle("Database connection error");
         pd.setDetail("There was an error connecting to the database. Please try again later.");
@@ -89,6 +164,7 @@ public class TransactionControllerAdvice {
     // =========================
     @ExceptionHandler(Exception.class)
     public ProblemDetail handleGenericException(Exception ex) {
+        count("internal");
         ProblemDetail pd = ProblemDetail.forStatus(HttpStatus.INTERNAL_SERVER_ERROR);
         pd.setTitle("Internal server error");
         pd.setDetail(ex.getMessage());
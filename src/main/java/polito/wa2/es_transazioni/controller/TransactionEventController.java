@@ -0,0 +1,75 @@
+package polito.wa2.es_transazioni.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import polito.wa2.es_transazioni.DTOs.TransactionEventDTO;
+import polito.wa2.es_transazioni.service.TransactionEventStream;
+
+import java.time.Duration;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/transactions/events")
+@Tag(name="Transaction Events", description="Change stream of the transactions (created, updated, deleted)")
+public class TransactionEventController {
+
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+    private static final int MAX_LIMIT = 1000;
+    private static final int MAX_WAIT_SECONDS = 60;
+
+    private final TransactionEventStream eventStream;
+
+    public TransactionEventController(TransactionEventStream eventStream) {
+        this.eventStream = eventStream;
+    }
+
+    // Long-poll for the next events
+    @Operation(
+        summary = "Get transaction events",
+        description = "Returns the events with a sequence greater than 'after', oldest first. When there are none " +
+                "yet the request waits up to waitSeconds for new ones. Pass the sequence of the last event received " +
+                "as 'after' in the next call."
+    )
+    @ApiResponse(responseCode = "200", description = "Events retrieved successfully (empty when the wait timed out)")
+    @ApiResponse(responseCode = "400", description = "Invalid parameters")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @GetMapping
+    public ResponseEntity<List<TransactionEventDTO>> getEvents(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "25") int waitSeconds
+    ) throws InterruptedException {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        List<TransactionEventDTO> events = eventStream.eventsAfter(after, limit);
+        if (events.isEmpty() && waitSeconds > 0
+                && eventStream.awaitEventsAfter(after, Duration.ofSeconds(Math.min(waitSeconds, MAX_WAIT_SECONDS)))) {
+            events = eventStream.eventsAfter(after, limit);
+        }
+        return ResponseEntity.ok(events);
+    }
+
+    // Push the events as they happen
+    @Operation(
+        summary = "Stream transaction events",
+        description = "Server-Sent Events stream of the transaction changes. Each event id is its sequence: " +
+                "reconnecting with Last-Event-ID (or 'after') resumes right after it. Without either the stream " +
+                "starts with the next change."
+    )
+    @ApiResponse(responseCode = "200", description = "Event stream opened")
+    @ApiResponse(responseCode = "500", description = "Internal server error")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) Long lastEventId,
+            @RequestParam(required = false) Long after
+    ) {
+        long from = lastEventId != null ? lastEventId : after != null ? after : eventStream.lastPublishedSequence();
+        return eventStream.subscribe(from);
+    }
+}
@@ -0,0 +1,26 @@
+package polito.wa2.es_transazioni.entity;
+
+import jakarta.persistence.*;
+
+
+// Last snapshot of the balance of one account in one currency; the deltas written
+// after the snapshot live in account_balance_deltas
+@Entity
+@Table(name = "account_balances")
+public class AccountBalance {
+
+
+    @EmbeddedId
+    private AccountBalanceId id;
+
+
+    // fixed-point, see Amounts
+    private long balance;
+
+
+    public AccountBalance() {}
+
+
+    public AccountBalanceId getId() { return id; }
+    public long getBalance() { return balance; }
+}
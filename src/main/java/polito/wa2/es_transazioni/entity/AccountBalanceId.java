@@ -0,0 +1,42 @@
+package polito.wa2.es_transazioni.entity;
+
+import jakarta.persistence.Embeddable;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+
+@Embeddable
+public class AccountBalanceId implements Serializable {
+
+
+    private String account;
+
+
+    private String currency;
+
+
+    public AccountBalanceId() {}
+
+
+    public AccountBalanceId(String account, String currency) {
+        this.account = account;
+        this.currency = currency;
+    }
+
+
+    public String getAccount() { return account; }
+    public String getCurrency() { return currency; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AccountBalanceId other)) return false;
+        return Objects.equals(account, other.account) && Objects.equals(currency, other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(account, currency);
+    }
+}
@@ -0,0 +1,81 @@
+package polito.wa2.es_transazioni.entity;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+// Amounts are stored as fixed-point longs in ten-thousandths of the currency unit. Four decimals cover
+// every ISO 4217 currency, and a single scale keeps amounts of different currencies comparable, so range
+// filters, sorting, sums and the amount index all work on plain longs.
+public final class Amounts {
+
+    public static final int SCALE = 4;
+
+    // Largest accepted amount is just under 10^11 units, 10^15 in storage, so the long sum of a rollup
+    // bucket or of an account balance (up to about 9.2 * 10^18) holds more than 9000 of them
+    public static final int MAX_INTEGER_DIGITS = 11;
+
+    private static final long[] POWERS_OF_TEN = {1, 10, 100, 1_000, 10_000};
+    private static final int DEFAULT_CURRENCY_SCALE = 2;
+
+    private Amounts() {}
+
+    // Exact: an amount with more than SCALE decimals or outside the long range is rejected
+    public static long toUnits(BigDecimal amount) {
+        try {
+            return amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Amount " + amount.toPlainString() + " is out of range or has more than " + SCALE + " decimals");
+        }
+    }
+
+    // Filter bounds: rounded with the given mode and clamped to the long range, so they never fail
+    public static long toUnits(BigDecimal bound, RoundingMode rounding) {
+        BigInteger units = bound.setScale(SCALE, rounding).unscaledValue();
+        if (units.bitLength() > 63) {
+            return units.signum() > 0 ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return units.longValue();
+    }
+
+    // Sums read back from the database (NUMERIC or BIGINT): exact, never silently truncated
+    public static long toUnits(Number sum) {
+        if (sum instanceof BigDecimal decimal) {
+            return decimal.longValueExact();
+        }
+        if (sum instanceof BigInteger integer) {
+            return integer.longValueExact();
+        }
+        return sum.longValue();
+    }
+
+    // With the currency's own number of decimals (10.50 EUR, 1050 JPY) whenever no digit is lost
+    public static BigDecimal toDecimal(long units, String currency) {
+        int scale = currencyScale(currency);
+        long factor = POWERS_OF_TEN[SCALE - scale];
+        if (units % factor == 0) {
+            return BigDecimal.valueOf(units / factor, scale);
+        }
+        return BigDecimal.valueOf(units, SCALE);
+    }
+
+    // Decimals allowed by the currency: 2 for EUR, 0 for JPY, 3 for KWD. Codes unknown to the JDK get 2;
+    // codes without minor unit (XAU...) accept the full storage precision.
+    public static int currencyScale(String currency) {
+        if (currency == null) {
+            return DEFAULT_CURRENCY_SCALE;
+        }
+        try {
+            int digits = Currency.getInstance(currency).getDefaultFractionDigits();
+            return digits < 0 ? SCALE : Math.min(digits, SCALE);
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_CURRENCY_SCALE;
+        }
+    }
+
+    // True when the amount has no more decimals than its currency allows
+    public static boolean fitsCurrency(BigDecimal amount, String currency) {
+        return amount.stripTrailingZeros().scale() <= currencyScale(currency);
+    }
+}
@@ -0,0 +1,44 @@
+package polito.wa2.es_transazioni.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+
+// A client-supplied Idempotency-Key with the request it was first used for and the response it produced
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyKey {
+
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String key;
+
+
+    private String scope;
+
+
+    private String requestHash;
+
+
+    @Column(columnDefinition = "TEXT")
+    private String responseBody;
+
+
+    private LocalDateTime createdAt;
+
+
+    private LocalDateTime expiresAt;
+
+
+    public IdempotencyKey() {}
+
+
+    public String getKey() { return key; }
+    public String getScope() { return scope; }
+    public String getRequestHash() { return requestHash; }
+    public String getResponseBody() { return responseBody; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+}
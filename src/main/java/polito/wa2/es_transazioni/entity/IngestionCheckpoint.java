@@ -0,0 +1,32 @@
+package polito.wa2.es_transazioni.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+
+// Last sequence number of a local ingestion log that has been written to the database
+@Entity
+@Table(name = "ingestion_checkpoints")
+public class IngestionCheckpoint {
+
+
+    @Id
+    @Column(length = 64)
+    private String logId;
+
+
+    private long seq;
+
+
+    // UTC
+    private LocalDateTime updatedAt;
+
+
+    public IngestionCheckpoint() {}
+
+
+    public String getLogId() { return logId; }
+    public long getSeq() { return seq; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
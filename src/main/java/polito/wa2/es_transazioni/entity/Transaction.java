@@ -6,6 +6,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.OffsetDateTime;
 
 
@@ -15,11 +16,14 @@ public class Transaction {
 
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
 
-    private Double amount;
+    // fixed-point, see Amounts
+    @Column(nullable = false)
+    private long amount;
 
 
     private String currency;
@@ -29,6 +33,8 @@ public class Transaction {
     private String description;
 
 
+    // partition key, see V10
+    @Column(nullable = false)
     private LocalDateTime timestamp;
 
     private String senderAccount;
@@ -36,13 +42,21 @@ public class Transaction {
     private String receiverAccount;
 
 
+    @Version
+    private long version;
+
+
+    // UTC
+    private LocalDateTime lastModified;
+
+
 // constructors, getters, setters
 
 
     public Transaction() {}
 
 
-    public Transaction(Double amount, String currency, String description, LocalDateTime timestamp) {
+    public Transaction(long amount, String currency, String description, LocalDateTime timestamp) {
         this.amount = amount;
         this.currency = currency;
         this.description = description;
@@ -50,10 +64,17 @@ public class Transaction {
     }
 
 
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = LocalDateTime.now(ZoneOffset.UTC);
+    }
+
+
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
-    public Double getAmount() { return amount; }
-    public void setAmount(Double amount) { this.amount = amount; }
+    public long getAmount() { return amount; }
+    public void setAmount(long amount) { this.amount = amount; }
     public String getCurrency() { return currency; }
     public void setCurrency(String currency) { this.currency = currency; }
     public String getDescription() { return description; }
@@ -64,4 +85,6 @@ public class Transaction {
     public void setSenderAccount(String senderAccount) { this.senderAccount = senderAccount; }
     public String getReceiverAccount() { return receiverAccount; }
     public void setReceiverAccount(String receiverAccount) { this.receiverAccount = receiverAccount;}
+    public long getVersion() { return version; }
+    public LocalDateTime getLastModified() { return lastModified; }
 }
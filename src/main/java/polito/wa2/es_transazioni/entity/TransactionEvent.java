@@ -0,0 +1,61 @@
+package polito.wa2.es_transazioni.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+
+// Outbox row: one change of the transactions table, waiting for (or already given) its published_seq
+@Entity
+@Table(name = "transaction_events")
+public class TransactionEvent {
+
+
+    public enum Type { CREATED, UPDATED, DELETED, CLEARED }
+
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_events_seq")
+    @SequenceGenerator(name = "transaction_events_seq", sequenceName = "transaction_events_seq", allocationSize = 50)
+    private Long id;
+
+
+    private Long publishedSeq;
+
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", length = 16)
+    private Type type;
+
+
+    private Long transactionId;
+
+
+    // TransactionDTO as JSON, null for CLEARED
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+
+    // UTC
+    private LocalDateTime createdAt;
+
+
+    public TransactionEvent() {}
+
+
+    public TransactionEvent(Type type, Long transactionId, String payload, LocalDateTime createdAt) {
+        this.type = type;
+        this.transactionId = transactionId;
+        this.payload = payload;
+        this.createdAt = createdAt;
+    }
+
+
+    public Long getId() { return id; }
+    public Long getPublishedSeq() { return publishedSeq; }
+    public void setPublishedSeq(Long publishedSeq) { this.publishedSeq = publishedSeq; }
+    public Type getType() { return type; }
+    public Long getTransactionId() { return transactionId; }
+    public String getPayload() { return payload; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+}
@@ -0,0 +1,37 @@
+package polito.wa2.es_transazioni.entity;
+
+import jakarta.persistence.*;
+
+
+// Aggregates of the transactions of one currency within one hour
+@Entity
+@Table(name = "transaction_rollups")
+public class TransactionRollup {
+
+
+    @EmbeddedId
+    private TransactionRollupId id;
+
+
+    @Column(name = "tx_count")
+    private long txCount;
+
+
+    private long totalAmount;
+
+
+    private long minAmount;
+
+
+    private long maxAmount;
+
+
+    public TransactionRollup() {}
+
+
+    public TransactionRollupId getId() { return id; }
+    public long getTxCount() { return txCount; }
+    public long getTotalAmount() { return totalAmount; }
+    public long getMinAmount() { return minAmount; }
+    public long getMaxAmount() { return maxAmount; }
+}
@@ -0,0 +1,45 @@
+package polito.wa2.es_transazioni.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+
+@Embeddable
+public class TransactionRollupId implements Serializable {
+
+
+    @Column(name = "bucket_start")
+    private LocalDateTime bucketStart;
+
+
+    private String currency;
+
+
+    public TransactionRollupId() {}
+
+
+    public TransactionRollupId(LocalDateTime bucketStart, String currency) {
+        this.bucketStart = bucketStart;
+        this.currency = currency;
+    }
+
+
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public String getCurrency() { return currency; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransactionRollupId other)) return false;
+        return Objects.equals(bucketStart, other.bucketStart) && Objects.equals(currency, other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(bucketStart, currency);
+    }
+}
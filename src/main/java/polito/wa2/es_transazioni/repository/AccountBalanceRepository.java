@@ -0,0 +1,52 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import polito.wa2.es_transazioni.entity.AccountBalance;
+import polito.wa2.es_transazioni.entity.AccountBalanceId;
+
+import java.util.List;
+
+@Repository
+public interface AccountBalanceRepository extends JpaRepository<AccountBalance, AccountBalanceId> {
+
+    // Append-only, so writers touching the same account never wait on each other's row locks
+    @Modifying
+    @Query(value = "INSERT INTO account_balance_deltas (account, currency, delta) VALUES (:account, :currency, :delta)",
+            nativeQuery = true)
+    void addDelta(@Param("account") String account, @Param("currency") String currency, @Param("delta") long delta);
+
+    // Moves every committed delta into the snapshot table. Deltas committed while this runs are not
+    // visible to the DELETE and stay for the next run; concurrent runs skip the rows the other deleted.
+    @Modifying
+    @Query(value = """
+            WITH folded AS (
+                DELETE FROM account_balance_deltas RETURNING account, currency, delta
+            )
+            INSERT INTO account_balances (account, currency, balance)
+            SELECT account, currency, SUM(delta) FROM folded GROUP BY account, currency
+            ON CONFLICT (account, currency) DO UPDATE SET balance = account_balances.balance + EXCLUDED.balance
+            """, nativeQuery = true)
+    int foldDeltas();
+
+    // [currency, balance] of one account: the snapshot plus the deltas written since. A single statement, so it
+    // sees a fold either entirely or not at all
+    @Query(value = """
+            SELECT currency, SUM(balance)
+            FROM (
+                SELECT currency, balance FROM account_balances WHERE account = :account
+                UNION ALL
+                SELECT currency, delta FROM account_balance_deltas WHERE account = :account
+            ) movements
+            GROUP BY currency
+            ORDER BY currency
+            """, nativeQuery = true)
+    List<Object[]> balancesOf(@Param("account") String account);
+
+    @Modifying
+    @Query(value = "DELETE FROM account_balance_deltas", nativeQuery = true)
+    void deleteAllDeltas();
+}
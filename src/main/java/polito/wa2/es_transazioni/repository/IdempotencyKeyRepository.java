@@ -0,0 +1,40 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import polito.wa2.es_transazioni.entity.IdempotencyKey;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+
+    // Returns 1 when the caller now owns the key (new, or expired and taken over), 0 when another request owns it.
+    // If that request has not committed yet, Postgres makes this statement wait on the key's index entry only.
+    @Modifying
+    @Query(value = """
+            INSERT INTO idempotency_keys (idempotency_key, scope, request_hash, response_body, created_at, expires_at)
+            VALUES (:key, :scope, :requestHash, NULL, :now, :expiresAt)
+            ON CONFLICT (idempotency_key) DO UPDATE SET
+                scope = EXCLUDED.scope,
+                request_hash = EXCLUDED.request_hash,
+                response_body = NULL,
+                created_at = EXCLUDED.created_at,
+                expires_at = EXCLUDED.expires_at
+            WHERE idempotency_keys.expires_at < :now
+            """, nativeQuery = true)
+    int claim(@Param("key") String key, @Param("scope") String scope, @Param("requestHash") String requestHash,
+              @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET response_body = :responseBody WHERE idempotency_key = :key",
+            nativeQuery = true)
+    void saveResponse(@Param("key") String key, @Param("responseBody") String responseBody);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
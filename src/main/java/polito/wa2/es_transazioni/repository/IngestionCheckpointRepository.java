@@ -0,0 +1,38 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import polito.wa2.es_transazioni.entity.IngestionCheckpoint;
+
+import java.util.Optional;
+
+@Repository
+public interface IngestionCheckpointRepository extends JpaRepository<IngestionCheckpoint, String> {
+
+    @Query("SELECT c.seq FROM IngestionCheckpoint c WHERE c.logId = :logId")
+    Optional<Long> findSeq(@Param("logId") String logId);
+
+    // Called in the transaction that writes the entries up to seq; never moves the checkpoint back
+    @Modifying
+    @Query(value = """
+            INSERT INTO ingestion_checkpoints (log_id, seq, updated_at)
+            VALUES (:logId, :seq, now() AT TIME ZONE 'UTC')
+            ON CONFLICT (log_id) DO UPDATE SET
+                seq = GREATEST(ingestion_checkpoints.seq, EXCLUDED.seq),
+                updated_at = EXCLUDED.updated_at
+            """, nativeQuery = true)
+    void advance(@Param("logId") String logId, @Param("seq") long seq);
+
+    // A log entry that can never be written; a replay of the same entry finds it already there
+    @Modifying
+    @Query(value = """
+            INSERT INTO ingestion_dead_letters (log_id, seq, tracking_id, payload, error, failed_at)
+            VALUES (:logId, :seq, :trackingId, :payload, :error, now() AT TIME ZONE 'UTC')
+            ON CONFLICT (log_id, seq) DO NOTHING
+            """, nativeQuery = true)
+    void addDeadLetter(@Param("logId") String logId, @Param("seq") long seq, @Param("trackingId") String trackingId,
+                       @Param("payload") String payload, @Param("error") String error);
+}
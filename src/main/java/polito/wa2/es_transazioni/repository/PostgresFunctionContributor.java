@@ -0,0 +1,33 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.time.LocalDateTime;
+
+// Postgres functions used from Criteria queries, registered through
+// META-INF/services/org.hibernate.boot.model.FunctionContributor.
+// Patterns keep constant arguments inline, so that the same expression in SELECT and GROUP BY renders identically.
+public class PostgresFunctionContributor implements FunctionContributor {
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        BasicType<LocalDateTime> timestamp = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.LOCAL_DATE_TIME);
+        BasicType<Boolean> bool = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.BOOLEAN);
+        BasicType<Double> real = functionContributions.getTypeConfiguration()
+                .getBasicTypeRegistry().resolve(StandardBasicTypes.DOUBLE);
+
+        functionContributions.getFunctionRegistry().registerPattern("hour_bucket", "date_trunc('hour', ?1)", timestamp);
+        functionContributions.getFunctionRegistry().registerPattern("day_bucket", "date_trunc('day', ?1)", timestamp);
+
+        // Full-text search: the tsvector expression must match idx_transactions_description_fts (V8)
+        functionContributions.getFunctionRegistry().registerPattern("fts_match",
+                "(to_tsvector('simple', ?1) @@ websearch_to_tsquery('simple', ?2))", bool);
+        functionContributions.getFunctionRegistry().registerPattern("fts_rank",
+                "ts_rank(to_tsvector('simple', ?1), websearch_to_tsquery('simple', ?2))", real);
+    }
+}
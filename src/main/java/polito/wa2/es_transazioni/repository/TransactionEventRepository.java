@@ -0,0 +1,45 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import polito.wa2.es_transazioni.entity.TransactionEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TransactionEventRepository extends JpaRepository<TransactionEvent, Long> {
+
+    // Only one relay at a time across all instances; released when its transaction ends
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryRelayLock(@Param("key") long key);
+
+    // In the order of the transactions that wrote them (see V15); the events of transactions that may still
+    // be overtaken by an older one, i.e. not older than every running transaction, wait for the next run
+    @Query(value = """
+            SELECT * FROM transaction_events
+            WHERE published_seq IS NULL AND xid < pg_snapshot_xmin(pg_current_snapshot())
+            ORDER BY xid, id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<TransactionEvent> findUnpublished(@Param("limit") int limit);
+
+    @Query(value = "SELECT COALESCE(MAX(published_seq), 0) FROM transaction_events", nativeQuery = true)
+    long lastPublishedSeq();
+
+    @Query(value = "SELECT * FROM transaction_events WHERE published_seq > :after ORDER BY published_seq LIMIT :limit",
+            nativeQuery = true)
+    List<TransactionEvent> findPublishedAfter(@Param("after") long after, @Param("limit") int limit);
+
+    // The newest published event is always kept, so the next published_seq continues after it
+    @Modifying
+    @Query(value = """
+            DELETE FROM transaction_events
+            WHERE created_at < :cutoff
+              AND published_seq < (SELECT MAX(published_seq) FROM transaction_events)
+            """, nativeQuery = true)
+    int deletePublishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
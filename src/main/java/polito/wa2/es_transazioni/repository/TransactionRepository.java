@@ -2,9 +2,89 @@ package polito.wa2.es_transazioni.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import polito.wa2.es_transazioni.entity.Transaction;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Repository
-public interface TransactionRepository extends JpaRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction> {
+public interface TransactionRepository extends JpaRepository<Transaction, Long>, JpaSpecificationExecutor<Transaction>,
+        TransactionRowRepository {
+
+    // Change counter of the table, see TransactionChangeCounter
+    @Query(value = "SELECT last_value FROM transactions_change_seq", nativeQuery = true)
+    long currentChange();
+
+    @Query(value = "SELECT nextval('transactions_change_seq')", nativeQuery = true)
+    long nextChange();
+
+    // Monthly partitions, see V10, V16 and TransactionPartitionService
+
+    @Query(value = "SELECT create_transactions_partition(:monthStart)", nativeQuery = true)
+    String createPartition(@Param("monthStart") LocalDate monthStart);
+
+    @Query(value = "SELECT detach_transactions_partition(:monthStart)", nativeQuery = true)
+    String detachPartition(@Param("monthStart") LocalDate monthStart);
+
+    @Query(value = "SELECT relname FROM pg_class WHERE relispartition AND relname ~ '^transactions_y[0-9]{4}m[0-9]{2}$'",
+            nativeQuery = true)
+    List<String> findPartitions();
+
+    // Months with rows in the default partition (written before their partition existed, see V16), as yyyy-MM
+    @Query(value = "SELECT DISTINCT to_char(timestamp, 'YYYY-MM') FROM transactions_default", nativeQuery = true)
+    List<String> findDefaultPartitionMonths();
+
+    @Query(value = "SELECT relname FROM pg_class WHERE relkind = 'r' AND relname ~ '^transactions_archiving_'",
+            nativeQuery = true)
+    List<String> findDetachedPartitions();
+
+    // Only one archiver at a time across all instances; released when its transaction ends
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryArchiveLock(@Param("key") long key);
+
+    // Account statements, newest first, seeking strictly before (beforeTimestamp, beforeId). Each side is a
+    // bounded range scan of its (account, timestamp, id) index, so the cost depends on the page size only.
+
+    @Query(value = """
+            SELECT * FROM transactions
+            WHERE sender_account = :account AND (timestamp, id) < (:beforeTimestamp, :beforeId)
+            ORDER BY timestamp DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Transaction> findSentBefore(@Param("account") String account,
+                                     @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                     @Param("beforeId") long beforeId, @Param("limit") int limit);
+
+    @Query(value = """
+            SELECT * FROM transactions
+            WHERE receiver_account = :account AND (timestamp, id) < (:beforeTimestamp, :beforeId)
+            ORDER BY timestamp DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Transaction> findReceivedBefore(@Param("account") String account,
+                                         @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                         @Param("beforeId") long beforeId, @Param("limit") int limit);
+
+    // Both directions: the two index scans are merged instead of OR-ing the columns, which would
+    // fall back to a bitmap scan and a sort; UNION drops transfers an account made to itself
+    @Query(value = """
+            (SELECT * FROM transactions
+             WHERE sender_account = :account AND (timestamp, id) < (:beforeTimestamp, :beforeId)
+             ORDER BY timestamp DESC, id DESC
+             LIMIT :limit)
+            UNION
+            (SELECT * FROM transactions
+             WHERE receiver_account = :account AND (timestamp, id) < (:beforeTimestamp, :beforeId)
+             ORDER BY timestamp DESC, id DESC
+             LIMIT :limit)
+            ORDER BY timestamp DESC, id DESC
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<Transaction> findByAccountBefore(@Param("account") String account,
+                                          @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                          @Param("beforeId") long beforeId, @Param("limit") int limit);
 }
@@ -0,0 +1,79 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import polito.wa2.es_transazioni.entity.TransactionRollup;
+import polito.wa2.es_transazioni.entity.TransactionRollupId;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TransactionRollupRepository extends JpaRepository<TransactionRollup, TransactionRollupId> {
+
+    // Adds a group of new transactions to their bucket; concurrent writers only contend on that row
+    @Modifying
+    @Query(value = """
+            INSERT INTO transaction_rollups (bucket_start, currency, tx_count, total_amount, min_amount, max_amount)
+            VALUES (:bucketStart, :currency, :count, :total, :min, :max)
+            ON CONFLICT (bucket_start, currency) DO UPDATE SET
+                tx_count = transaction_rollups.tx_count + EXCLUDED.tx_count,
+                total_amount = transaction_rollups.total_amount + EXCLUDED.total_amount,
+                min_amount = LEAST(transaction_rollups.min_amount, EXCLUDED.min_amount),
+                max_amount = GREATEST(transaction_rollups.max_amount, EXCLUDED.max_amount)
+            """, nativeQuery = true)
+    void add(@Param("bucketStart") LocalDateTime bucketStart, @Param("currency") String currency,
+             @Param("count") long count, @Param("total") long total,
+             @Param("min") long min, @Param("max") long max);
+
+    // Min and max cannot be maintained when rows leave a bucket, so the bucket is rebuilt from the
+    // (currency, timestamp) index, which only touches the transactions of that hour
+    @Modifying
+    @Query(value = "DELETE FROM transaction_rollups WHERE bucket_start = :bucketStart AND currency = :currency",
+            nativeQuery = true)
+    void deleteBucket(@Param("bucketStart") LocalDateTime bucketStart, @Param("currency") String currency);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO transaction_rollups (bucket_start, currency, tx_count, total_amount, min_amount, max_amount)
+            SELECT :bucketStart, :currency, COUNT(*), SUM(amount), MIN(amount), MAX(amount)
+            FROM transactions
+            WHERE currency = :currency AND timestamp >= :bucketStart AND timestamp < :bucketEnd
+            HAVING COUNT(*) > 0
+            """, nativeQuery = true)
+    void rebuildBucket(@Param("bucketStart") LocalDateTime bucketStart, @Param("bucketEnd") LocalDateTime bucketEnd,
+                       @Param("currency") String currency);
+
+    // Drops the buckets of a period whose transactions left the table (an archived month)
+    @Modifying
+    @Query(value = "DELETE FROM transaction_rollups WHERE bucket_start >= :start AND bucket_start < :end",
+            nativeQuery = true)
+    void deleteRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // [currency, count, total, min, max]
+    @Query(value = """
+            SELECT currency, SUM(tx_count), SUM(total_amount), MIN(min_amount), MAX(max_amount)
+            FROM transaction_rollups
+            WHERE (CAST(:currency AS VARCHAR) IS NULL OR currency = :currency)
+              AND bucket_start >= :start AND bucket_start < :end
+            GROUP BY currency
+            ORDER BY currency
+            """, nativeQuery = true)
+    List<Object[]> totalsByCurrency(@Param("currency") String currency,
+                                    @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // [bucket, currency, count, total], granularity is 'hour' or 'day'
+    @Query(value = """
+            SELECT date_trunc(:granularity, bucket_start), currency, SUM(tx_count), SUM(total_amount)
+            FROM transaction_rollups
+            WHERE (CAST(:currency AS VARCHAR) IS NULL OR currency = :currency)
+              AND bucket_start >= :start AND bucket_start < :end
+            GROUP BY 1, 2
+            ORDER BY 1, 2
+            """, nativeQuery = true)
+    List<Object[]> volume(@Param("granularity") String granularity, @Param("currency") String currency,
+                          @Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
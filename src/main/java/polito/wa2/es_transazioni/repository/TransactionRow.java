@@ -0,0 +1,17 @@
+package polito.wa2.es_transazioni.repository;
+
+import java.time.LocalDateTime;
+
+// Read model of a transactions row, built straight from the result set: no managed entity, no
+// persistence-context entry and no dirty-checking snapshot. amount is fixed-point, see Amounts.
+public record TransactionRow(
+        Long id,
+        long amount,
+        String currency,
+        String description,
+        LocalDateTime timestamp,
+        String senderAccount,
+        String receiverAccount,
+        long version,
+        LocalDateTime lastModified) {
+}
@@ -0,0 +1,20 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import polito.wa2.es_transazioni.entity.Transaction;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+// Projection reads of TransactionRepository, implemented in TransactionRowRepositoryImpl
+public interface TransactionRowRepository {
+
+    // Rows matching the specification in the given order (the specification may order by itself
+    // when sort is unsorted), skipping offset rows; no count query is run
+    List<TransactionRow> findRows(Specification<Transaction> spec, Sort sort, long offset, int limit);
+
+    // Every matching row through a server-side cursor, fetchSize rows per round trip.
+    // Needs an open transaction and must be closed.
+    Stream<TransactionRow> streamRows(Specification<Transaction> spec, Sort sort, int fetchSize);
+}
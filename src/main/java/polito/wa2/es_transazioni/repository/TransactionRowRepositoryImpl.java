@@ -0,0 +1,60 @@
+package polito.wa2.es_transazioni.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import polito.wa2.es_transazioni.entity.Transaction;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+class TransactionRowRepositoryImpl implements TransactionRowRepository {
+
+    private final EntityManager entityManager;
+
+    TransactionRowRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<TransactionRow> findRows(Specification<Transaction> spec, Sort sort, long offset, int limit) {
+        return query(spec, sort)
+                .setFirstResult(Math.toIntExact(offset))
+                .setMaxResults(limit)
+                // the whole page in one round trip
+                .setHint(HibernateHints.HINT_FETCH_SIZE, limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<TransactionRow> streamRows(Specification<Transaction> spec, Sort sort, int fetchSize) {
+        return query(spec, sort)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .getResultStream();
+    }
+
+    private TypedQuery<TransactionRow> query(Specification<Transaction> spec, Sort sort) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransactionRow> query = cb.createQuery(TransactionRow.class);
+        Root<Transaction> root = query.from(Transaction.class);
+        query.select(cb.construct(TransactionRow.class,
+                root.get("id"), root.get("amount"), root.get("currency"), root.get("description"),
+                root.get("timestamp"), root.get("senderAccount"), root.get("receiverAccount"),
+                root.get("version"), root.get("lastModified")));
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+        return entityManager.createQuery(query);
+    }
+}
@@ -0,0 +1,81 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.springframework.data.jpa.domain.Specification;
+import polito.wa2.es_transazioni.entity.Amounts;
+import polito.wa2.es_transazioni.entity.Transaction;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+
+// Filters shared by the listing, export and statistics queries
+public final class TransactionSpecifications {
+
+    private TransactionSpecifications() {}
+
+    public static Specification<Transaction> filter(
+            String currency, BigDecimal minAmount, BigDecimal maxAmount,
+            String startDate, String endDate) {
+
+        Specification<Transaction> spec = Specification.allOf();
+
+        if (currency != null) {
+            spec = spec.and((root, query, cb) -> cb.equal(root.get("currency"), currency));
+        }
+        // bounds are converted once and rounded inwards, rows are compared as longs
+        if (minAmount != null) {
+            long min = Amounts.toUnits(minAmount, RoundingMode.CEILING);
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("amount"), min));
+        }
+        if (maxAmount != null) {
+            long max = Amounts.toUnits(maxAmount, RoundingMode.FLOOR);
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("amount"), max));
+        }
+        if (startDate != null) {
+            LocalDateTime start = parseDateTime(startDate);
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("timestamp"), start));
+        }
+        if (endDate != null) {
+            LocalDateTime end = parseDateTime(endDate);
+            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("timestamp"), end));
+        }
+        return spec;
+    }
+
+    // Full-text match on the description, served by the GIN index of V8. Web-search syntax:
+    // words are ANDed, "quoted phrases" must be adjacent, -word excludes, "or" alternates.
+    public static Specification<Transaction> search(String q) {
+        if (q == null || q.isBlank()) {
+            return Specification.allOf();
+        }
+        return (root, query, cb) -> cb.isTrue(cb.function("fts_match", Boolean.class, root.get("description"), cb.literal(q)));
+    }
+
+    // Best matches first, then by id for a stable order. Only the row query is ordered; the count query of a page is not.
+    public static Specification<Transaction> orderByRelevance(String q) {
+        return (root, query, cb) -> {
+            if (!Long.class.equals(query.getResultType())) {
+                query.orderBy(
+                        cb.desc(cb.function("fts_rank", Double.class, root.get("description"), cb.literal(q))),
+                        cb.desc(root.get("id")));
+            }
+            return null;
+        };
+    }
+
+    // Accepts both "2024-09-23T14:30:00+02:00" and "2024-09-23T14:30:00". The column is a plain timestamp,
+    // so the value is bound as LocalDateTime and the comparison can use the timestamp indexes.
+    public static LocalDateTime parseDateTime(String value) {
+        try {
+            return OffsetDateTime.parse(value).toLocalDateTime();
+        } catch (DateTimeParseException ex) {
+            try {
+                return LocalDateTime.parse(value);
+            } catch (DateTimeParseException ignored) {
+                throw new IllegalArgumentException("Invalid date '" + value + "', expected ISO-8601 date-time");
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package polito.wa2.es_transazioni.service;
+
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import polito.wa2.es_transazioni.DTOs.AccountBalanceDTO;
+import polito.wa2.es_transazioni.entity.Amounts;
+import polito.wa2.es_transazioni.entity.Transaction;
+import polito.wa2.es_transazioni.repository.AccountBalanceRepository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Running balance of every (account, currency), updated incrementally by TransactionService: each write appends
+// its deltas to account_balance_deltas in the same database transaction, and the periodic snapshot folds them
+// into account_balances. A balance is read as its snapshot plus the deltas written since, so every instance
+// answers the same, whichever instance (or ingestion writer) made the writes.
+@Service
+@Timed("transaction.service")
+public class AccountBalanceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AccountBalanceService.class);
+
+    private final AccountBalanceRepository balanceRepository;
+
+    public AccountBalanceService(AccountBalanceRepository balanceRepository) {
+        this.balanceRepository = balanceRepository;
+    }
+
+    private record BalanceKey(String account, String currency) {}
+
+    // Balance maintenance, called by TransactionService within its write transactions
+
+    public void recordCreated(Collection<Transaction> transactions) {
+        Map<BalanceKey, Long> deltas = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            addMovement(deltas, transaction, 1);
+        }
+        apply(deltas);
+    }
+
+    public void recordRemoved(Transaction removed) {
+        Map<BalanceKey, Long> deltas = new HashMap<>();
+        addMovement(deltas, removed, -1);
+        apply(deltas);
+    }
+
+    // old* are the values before the update: the old movement is reverted and the new one applied
+    public void recordUpdated(String oldSender, String oldReceiver, String oldCurrency, long oldAmount, Transaction updated) {
+        Map<BalanceKey, Long> deltas = new HashMap<>();
+        addMovement(deltas, oldSender, oldReceiver, oldCurrency, oldAmount, -1);
+        addMovement(deltas, updated, 1);
+        apply(deltas);
+    }
+
+    public void clear() {
+        balanceRepository.deleteAllDeltas();
+        balanceRepository.deleteAllInBatch();
+    }
+
+    // Two index lookups: the snapshot rows of the account and its deltas not folded yet
+    @Transactional(readOnly = true)
+    public AccountBalanceDTO getBalance(String account) {
+        List<Object[]> rows = balanceRepository.balancesOf(account);
+        if (rows.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No transactions for account " + account);
+        }
+        Map<String, BigDecimal> result = new TreeMap<>();
+        for (Object[] row : rows) {
+            String currency = (String) row[0];
+            result.put(currency, Amounts.toDecimal(Amounts.toUnits((Number) row[1]), currency));
+        }
+        return new AccountBalanceDTO(account, result);
+    }
+
+    // Folds the deltas into account_balances, keeping the deltas a balance read adds up short
+    @Scheduled(fixedDelayString = "${app.balances.snapshot-interval:PT1M}")
+    @Transactional
+    public void snapshot() {
+        int folded = balanceRepository.foldDeltas();
+        if (folded > 0) {
+            logger.debug("Folded balance changes of {} accounts into the snapshot", folded);
+        }
+    }
+
+    private static void addMovement(Map<BalanceKey, Long> deltas, Transaction transaction, int sign) {
+        addMovement(deltas, transaction.getSenderAccount(), transaction.getReceiverAccount(),
+                transaction.getCurrency(), transaction.getAmount(), sign);
+    }
+
+    private static void addMovement(Map<BalanceKey, Long> deltas, String sender, String receiver,
+                                    String currency, long amount, int sign) {
+        if (currency == null) {
+            return;
+        }
+        if (sender != null) {
+            deltas.merge(new BalanceKey(sender, currency), -sign * amount, Long::sum);
+        }
+        if (receiver != null) {
+            deltas.merge(new BalanceKey(receiver, currency), sign * amount, Long::sum);
+        }
+    }
+
+    // Written with the transaction, so a rolled back write never shows up in a balance
+    private void apply(Map<BalanceKey, Long> deltas) {
+        deltas.values().removeIf(delta -> delta == 0);
+        deltas.forEach((key, delta) -> balanceRepository.addDelta(key.account(), key.currency(), delta));
+    }
+}
@@ -0,0 +1,318 @@
+package polito.wa2.es_transazioni.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.validation.ValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import polito.wa2.es_transazioni.DTOs.BatchItemResultDTO;
+import polito.wa2.es_transazioni.DTOs.BatchResultDTO;
+import polito.wa2.es_transazioni.DTOs.IngestionStatusDTO;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+import polito.wa2.es_transazioni.repository.IngestionCheckpointRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Accept-then-persist mode (app.ingestion.async.enabled=true). Accepted transactions are appended to a local
+// log and put on a bounded queue; a single writer drains the queue into the database in JDBC-batched
+// transactions of up to app.ingestion.batch-size rows. Each of those transactions also advances the
+// checkpoint of the log in ingestion_checkpoints, so a replay after a crash skips exactly what was written.
+// When the queue is full new requests are refused instead of piling up on the connection pool.
+@Service
+@ConditionalOnProperty(name = "app.ingestion.async.enabled", havingValue = "true")
+public class AsyncIngestionService implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncIngestionService.class);
+
+    private final TransactionService transactionService;
+    private final IngestionCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final IngestionLog log;
+    private final BlockingQueue<IngestionLog.Entry> queue;
+    private final int batchSize;
+    private final long retryAfterSeconds;
+    private final Cache<String, IngestionStatusDTO> statuses;
+    // guards appends to the log, the sequence and the queue; a ReentrantLock so virtual threads waiting here
+    // do not pin their carrier. Not held during fsync, see IngestionLog.sync
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private Thread writer;
+    private long lastSeq;
+    private volatile boolean running;
+
+    public AsyncIngestionService(TransactionService transactionService,
+                                 IngestionCheckpointRepository checkpointRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry registry,
+                                 @Value("${app.ingestion.log-dir:data/ingestion}") Path logDir,
+                                 @Value("${app.ingestion.fsync:true}") boolean fsync,
+                                 @Value("${app.ingestion.segment-size:64MB}") DataSize segmentSize,
+                                 @Value("${app.ingestion.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${app.ingestion.batch-size:500}") int batchSize,
+                                 @Value("${app.ingestion.retry-after-seconds:1}") long retryAfterSeconds,
+                                 @Value("${app.ingestion.status-retention:PT1H}") Duration statusRetention) {
+        this.transactionService = transactionService;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.log = new IngestionLog(objectMapper, logDir, fsync, segmentSize.toBytes());
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.statuses = Caffeine.newBuilder().maximumSize(1_000_000).expireAfterWrite(statusRetention).build();
+        Gauge.builder("transaction.ingestion.queue.size", queue, BlockingQueue::size).register(registry);
+    }
+
+    // Replays what was accepted before a crash or restart, then starts the writer. On start, which comes before
+    // the web server's (see getPhase), and not in the constructor: reading the checkpoint needs the database, and
+    // the replayed entries are written through beans that are only all initialized once the context is refreshed
+    @Override
+    public void start() {
+        long checkpoint = Math.max(checkpointRepository.findSeq(log.id()).orElse(0L), log.legacyCheckpoint());
+        List<IngestionLog.Entry> pending = log.readPending(checkpoint);
+        lastSeq = pending.isEmpty() ? checkpoint : pending.get(pending.size() - 1).seq();
+        log.open(lastSeq + 1);
+        log.deleteCovered(checkpoint);
+        running = true;
+        writer = Thread.ofPlatform().name("ingestion-writer").daemon().start(this::drain);
+        if (!pending.isEmpty()) {
+            logger.info("Replaying {} transactions from the ingestion log", pending.size());
+        }
+        for (IngestionLog.Entry entry : pending) {
+            statuses.put(entry.trackingId(), status(entry.trackingId(), IngestionStatusDTO.Status.ACCEPTED, null, null));
+            try {
+                queue.put(entry);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while replaying the ingestion log", ex);
+            }
+        }
+    }
+
+    // Durably records the transaction and queues it; the returned tracking id can be polled with getStatus
+    public IngestionStatusDTO accept(TransactionDTO transaction) {
+        String trackingId = UUID.randomUUID().toString();
+        IngestionLog.Entry entry;
+        appendLock.lock();
+        try {
+            // only producers add to the queue and they all hold the lock, so a free slot stays free until offer
+            if (queue.remainingCapacity() == 0) {
+                throw new IngestionQueueFullException(retryAfterSeconds);
+            }
+            entry = new IngestionLog.Entry(++lastSeq, trackingId, transaction);
+            log.append(entry);
+            queue.offer(entry);
+        } finally {
+            appendLock.unlock();
+        }
+        // outside the lock, so one fsync covers all the entries appended meanwhile. The writer may persist the
+        // entry before it is on disk; a crash in between leaves it in the database, covered by the checkpoint.
+        log.sync(entry.seq());
+        IngestionStatusDTO status = status(trackingId, IngestionStatusDTO.Status.ACCEPTED, null, null);
+        statuses.put(trackingId, status);
+        return status;
+    }
+
+    public IngestionStatusDTO getStatus(String trackingId) {
+        return statuses.getIfPresent(trackingId);
+    }
+
+    private void drain() {
+        List<IngestionLog.Entry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                IngestionLog.Entry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                persist(batch);
+                batch.clear();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Writes the batch, retrying while the database is unavailable. A batch that can never be written is split
+    // into one transaction per entry, and an entry that still fails is dead-lettered: one bad row must not
+    // block the queue, and with it every producer, forever.
+    private void persist(List<IngestionLog.Entry> batch) throws InterruptedException {
+        RuntimeException failure = write(batch);
+        if (failure != null && batch.size() > 1) {
+            logger.warn("A batch of {} queued transactions cannot be written, writing them one by one", batch.size(), failure);
+            for (IngestionLog.Entry entry : batch) {
+                persist(List.of(entry));
+            }
+            return;
+        }
+        if (failure != null) {
+            deadLetter(batch.get(0), failure);
+        }
+
+        appendLock.lock();
+        try {
+            log.deleteCovered(batch.get(batch.size() - 1).seq());
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Null once the batch is written, or the error that will make it fail whatever the number of retries
+    private RuntimeException write(List<IngestionLog.Entry> batch) throws InterruptedException {
+        List<TransactionDTO> transactions = batch.stream().map(IngestionLog.Entry::transaction).toList();
+        long committed = batch.get(batch.size() - 1).seq();
+        long backoffMillis = 100;
+        while (true) {
+            try {
+                // the rows and the checkpoint that covers them commit together
+                BatchResultDTO result = transactionTemplate.execute(status -> {
+                    BatchResultDTO created = transactionService.createTransactions(transactions);
+                    checkpointRepository.advance(log.id(), committed);
+                    return created;
+                });
+                for (BatchItemResultDTO item : result.getItems()) {
+                    String trackingId = batch.get(item.getIndex()).trackingId();
+                    IngestionStatusDTO.Status status = item.getStatus() == BatchItemResultDTO.Status.CREATED
+                            ? IngestionStatusDTO.Status.PERSISTED : IngestionStatusDTO.Status.REJECTED;
+                    statuses.put(trackingId, status(trackingId, status, item.getId(), item.getErrors()));
+                }
+                return null;
+            } catch (RuntimeException ex) {
+                if (isPermanent(ex)) {
+                    return ex;
+                }
+                backoffMillis = backOff(batch.size(), backoffMillis, ex);
+            }
+        }
+    }
+
+    // Stores the entry in ingestion_dead_letters and moves the checkpoint past it, in one transaction
+    private void deadLetter(IngestionLog.Entry entry, RuntimeException failure) throws InterruptedException {
+        String error = rootMessage(failure);
+        String payload = toJson(entry.transaction());
+        long backoffMillis = 100;
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    checkpointRepository.addDeadLetter(log.id(), entry.seq(), entry.trackingId(), payload, error);
+                    checkpointRepository.advance(log.id(), entry.seq());
+                });
+                break;
+            } catch (RuntimeException ex) {
+                backoffMillis = backOff(1, backoffMillis, ex);
+            }
+        }
+        logger.error("Queued transaction {} (tracking id {}) cannot be written and was dead-lettered: {}",
+                entry.seq(), entry.trackingId(), error);
+        statuses.put(entry.trackingId(), status(entry.trackingId(), IngestionStatusDTO.Status.FAILED, null,
+                Map.of("transaction", error)));
+    }
+
+    private long backOff(int size, long backoffMillis, RuntimeException ex) throws InterruptedException {
+        if (!running) {
+            // shutting down: the entries stay in the log and are replayed on the next start
+            throw new InterruptedException("Shutdown while persisting ingestion batch");
+        }
+        logger.warn("Writing {} queued transactions failed, retrying in {} ms", size, backoffMillis, ex);
+        Thread.sleep(backoffMillis);
+        return Math.min(backoffMillis * 2, 10_000);
+    }
+
+    // Errors in the data itself (SQLSTATE classes 22 and 23: bad value, constraint violation) or rejected
+    // arguments fail again on every retry; anything else (connection lost, pool exhausted...) may not
+    static boolean isPermanent(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+            if (cause instanceof IllegalArgumentException || cause instanceof ValidationException
+                    || cause instanceof DataIntegrityViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException sql && sql.getSQLState() != null
+                    && (sql.getSQLState().startsWith("22") || sql.getSQLState().startsWith("23"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String rootMessage(Throwable ex) {
+        Throwable root = ex;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        return root.getMessage() != null ? root.getMessage() : root.getClass().getSimpleName();
+    }
+
+    private String toJson(TransactionDTO transaction) {
+        try {
+            return objectMapper.writeValueAsString(transaction);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize queued transaction", ex);
+        }
+    }
+
+    private static IngestionStatusDTO status(String trackingId, IngestionStatusDTO.Status status,
+                                             Long transactionId, Map<String, String> errors) {
+        return new IngestionStatusDTO(trackingId, status, transactionId, errors);
+    }
+
+    // After the web server has stopped taking requests: the writer drains the queue for up to 30 seconds, what
+    // is left stays in the log for the next start
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            if (writer.isAlive()) {
+                writer.interrupt();
+                writer.join();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            log.close();
+        } catch (IOException ex) {
+            logger.warn("Cannot close the ingestion log", ex);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // After TransactionEventStream (phase 0) and before the web server, so no request is accepted before the
+    // replayed entries are back on the queue
+    @Override
+    public int getPhase() {
+        return 1;
+    }
+}
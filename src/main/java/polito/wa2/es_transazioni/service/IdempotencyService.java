@@ -0,0 +1,102 @@
+package polito.wa2.es_transazioni.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import polito.wa2.es_transazioni.entity.IdempotencyKey;
+import polito.wa2.es_transazioni.repository.IdempotencyKeyRepository;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+@Service
+public class IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              ObjectMapper objectMapper,
+                              @Value("${app.idempotency.ttl:PT24H}") Duration ttl) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+    }
+
+    public record Outcome<T>(T response, boolean replayed) {}
+
+    // Runs the action at most once per key. The key is claimed and the action's writes are committed in the
+    // same transaction, so a retry, or a concurrent duplicate once the first request commits, gets the
+    // stored response back from a primary-key lookup instead of running the action again.
+    @Transactional
+    public <T> Outcome<T> execute(String key, String scope, Object request, Class<T> responseType, Supplier<T> action) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hash(request);
+        LocalDateTime now = LocalDateTime.now();
+
+        if (idempotencyKeyRepository.claim(key, scope, requestHash, now, now.plus(ttl)) == 1) {
+            T response = action.get();
+            idempotencyKeyRepository.saveResponse(key, toJson(response));
+            return new Outcome<>(response, false);
+        }
+
+        IdempotencyKey existing = idempotencyKeyRepository.findById(key)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT, "Idempotency-Key is being processed, retry later"));
+        if (!existing.getScope().equals(scope) || !existing.getRequestHash().equals(requestHash)) {
+            throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                    "Idempotency-Key was already used for a different request");
+        }
+        return new Outcome<>(fromJson(existing.getResponseBody(), responseType), true);
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.cleanup-interval:PT1H}")
+    @Transactional
+    public void deleteExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteExpired(LocalDateTime.now());
+        if (deleted > 0) {
+            logger.info("Deleted {} expired idempotency keys", deleted);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("Cannot hash request", ex);
+        }
+    }
+
+    private String toJson(Object response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot store idempotent response", ex);
+        }
+    }
+
+    private <T> T fromJson(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot read idempotent response", ex);
+        }
+    }
+}
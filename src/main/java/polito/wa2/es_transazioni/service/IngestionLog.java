@@ -0,0 +1,236 @@
+package polito.wa2.es_transazioni.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Local append-only log of accepted-but-not-yet-persisted transactions (one JSON entry per line). The
+// checkpoint of the log (the last sequence number written to the database) is kept in the database under
+// the id of the log, see AsyncIngestionService; after a crash the entries past it are replayed. The log
+// is split into segments named after their first sequence number; a segment is rolled once it reaches
+// segmentSize and deleted once the checkpoint covers all of it, so the log stays bounded under steady load.
+// Appends, rolls and deletions must be serialized by the caller (AsyncIngestionService); sync may be called
+// from any thread.
+class IngestionLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionLog.class);
+    private static final Pattern SEGMENT = Pattern.compile("ingestion-(\\d{20})\\.log");
+    // single file and checkpoint file of the logs written before segments and database checkpoints existed
+    private static final String LEGACY_LOG = "ingestion.log";
+    private static final String LEGACY_CHECKPOINT = "ingestion.checkpoint";
+
+    record Entry(long seq, String trackingId, TransactionDTO transaction) {}
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final String id;
+    private final boolean fsync;
+    private final long segmentSize;
+    // first sequence number -> segment, the last one is the segment being appended to
+    private final TreeMap<Long, Path> segments = new TreeMap<>();
+    // held while forcing the segment to disk and while switching segments
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private FileChannel channel;
+    // last entry written to the segment, and last entry known to be on disk
+    private volatile long appendedSeq;
+    private volatile long syncedSeq;
+
+    IngestionLog(ObjectMapper objectMapper, Path directory, boolean fsync, long segmentSize) {
+        this.objectMapper = objectMapper;
+        this.directory = directory;
+        this.fsync = fsync;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            this.id = readOrCreateId(directory.resolve("ingestion.id"));
+            Path legacy = directory.resolve(LEGACY_LOG);
+            if (Files.exists(legacy)) {
+                Files.move(legacy, segmentPath(0), StandardCopyOption.ATOMIC_MOVE);
+            }
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> {
+                    Matcher matcher = SEGMENT.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        segments.put(Long.parseLong(matcher.group(1)), file);
+                    }
+                });
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot open ingestion log in " + directory, ex);
+        }
+    }
+
+    // Starts appending; nextSeq is the sequence number of the next entry, i.e. after everything replayed
+    void open(long nextSeq) {
+        appendedSeq = nextSeq - 1;
+        syncedSeq = nextSeq - 1;
+        roll(nextSeq);
+    }
+
+    // Checkpoint left by a log written before checkpoints moved to the database, 0 if there is none
+    long legacyCheckpoint() {
+        Path file = directory.resolve(LEGACY_CHECKPOINT);
+        try {
+            return Files.exists(file) ? Long.parseLong(Files.readString(file).trim()) : 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot read ingestion checkpoint", ex);
+        }
+    }
+
+    // Id of this log, the key of its checkpoint in the database; created with the log directory
+    String id() {
+        return id;
+    }
+
+    // Writes the entry without forcing it to disk, see sync
+    void append(Entry entry) {
+        try {
+            if (channel.size() >= segmentSize) {
+                roll(entry.seq());
+            }
+            byte[] line = (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            appendedSeq = entry.seq();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot append to ingestion log", ex);
+        }
+    }
+
+    // Returns once the entry with this sequence number is on disk. Group commit: a single force covers every
+    // entry appended before it started, so the producers that queued up behind it return without their own.
+    void sync(long seq) {
+        if (!fsync || syncedSeq >= seq) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (syncedSeq >= seq) {
+                return;
+            }
+            long target = appendedSeq;
+            channel.force(false);
+            syncedSeq = target;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot sync ingestion log", ex);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    // Entries not yet covered by the checkpoint, oldest first; a torn last line from a crash during append is skipped
+    List<Entry> readPending(long checkpoint) {
+        List<Entry> pending = new ArrayList<>();
+        for (Path segment : segments.values()) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        Entry entry = objectMapper.readValue(line, Entry.class);
+                        if (entry.seq() > checkpoint) {
+                            pending.add(entry);
+                        }
+                    } catch (JsonProcessingException ex) {
+                        logger.warn("Skipping unreadable ingestion log entry: {}", ex.getOriginalMessage());
+                    }
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot read ingestion log " + segment, ex);
+            }
+        }
+        return pending;
+    }
+
+    // Deletes the segments whose entries are all at or below the checkpoint; never the one being appended to
+    void deleteCovered(long checkpoint) {
+        Map.Entry<Long, Path> segment = segments.firstEntry();
+        while (segment != null) {
+            Long next = segments.higherKey(segment.getKey());
+            if (next == null || next - 1 > checkpoint) {
+                return;
+            }
+            try {
+                Files.deleteIfExists(segment.getValue());
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Cannot delete ingestion log segment " + segment.getValue(), ex);
+            }
+            segments.remove(segment.getKey());
+            segment = segments.firstEntry();
+        }
+    }
+
+    // Forces and closes the current segment and continues in a new one from firstSeq
+    private void roll(long firstSeq) {
+        syncLock.lock();
+        try {
+            if (channel != null) {
+                if (fsync) {
+                    channel.force(false);
+                }
+                syncedSeq = appendedSeq;
+                channel.close();
+            }
+            Path segment = segmentPath(firstSeq);
+            channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            segments.put(firstSeq, segment);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot roll ingestion log in " + directory, ex);
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private static String readOrCreateId(Path file) throws IOException {
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, id, StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+        return id;
+    }
+
+    private Path segmentPath(long firstSeq) {
+        return directory.resolve(String.format("ingestion-%020d.log", firstSeq));
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncLock.lock();
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package polito.wa2.es_transazioni.service;
+
+// The write-behind queue is full: the client should retry after the given delay
+public class IngestionQueueFullException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public IngestionQueueFullException(long retryAfterSeconds) {
+        super("Ingestion queue is full, retry in " + retryAfterSeconds + " seconds");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,20 @@
+package polito.wa2.es_transazioni.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import polito.wa2.es_transazioni.DTOs.TransactionEventDTO;
+
+import java.util.List;
+
+// Local stand-in for a message broker sink
+@Service
+public class LoggingTransactionEventPublisher implements TransactionEventPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoggingTransactionEventPublisher.class);
+
+    @Override
+    public void publish(List<TransactionEventDTO> events) {
+        logger.debug("Published events {} to {}", events.get(0).getSequence(), events.get(events.size() - 1).getSequence());
+    }
+}
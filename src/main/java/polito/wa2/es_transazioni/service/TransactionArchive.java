@@ -0,0 +1,137 @@
+package polito.wa2.es_transazioni.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+import polito.wa2.es_transazioni.repository.TransactionSpecifications;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+// Cold tier of the transactions table: one gzipped NDJSON file per archived partition, named
+// transactions-<yyyy>-<MM>-<id>.ndjson.gz. Reads scan the files of the months they ask for, so they are
+// much slower than the table, but nothing is lost when a month leaves it.
+@Component
+public class TransactionArchive {
+
+    private static final Pattern FILE_NAME = Pattern.compile("transactions-(\\d{4})-(\\d{2})-(\\d+)\\.ndjson\\.gz");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader reader;
+
+    public TransactionArchive(@Value("${app.archive.dir:data/archive}") Path directory, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(TransactionDTO.class);
+    }
+
+    // Writes the rows of one detached partition. The file only gets its final name once it is complete and
+    // on disk, and writing the same (month, id) again replaces it, so an interrupted archive can be redone.
+    public long write(YearMonth month, long id, Stream<TransactionDTO> transactions) throws IOException {
+        Files.createDirectories(directory);
+        Path target = fileOf(month, id);
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        long count = 0;
+        try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+            try (TransactionExportWriter writer = new TransactionExportWriter(objectMapper, ExportFormat.NDJSON, true, out)) {
+                for (Iterator<TransactionDTO> it = transactions.iterator(); it.hasNext(); ) {
+                    writer.write(it.next());
+                    count++;
+                }
+            }
+            out.getChannel().force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        // the rename itself is only durable once the directory is on disk
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        }
+        return count;
+    }
+
+    // Reads back the file written for (month, id) and returns how many transactions it holds; fails if the
+    // file is missing or cannot be decompressed and parsed to the end
+    public long count(YearMonth month, long id) throws IOException {
+        long count = 0;
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(fileOf(month, id)), BUFFER_SIZE);
+             MappingIterator<TransactionDTO> rows = reader.readValues(in)) {
+            while (rows.hasNext()) {
+                rows.next();
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Path fileOf(YearMonth month, long id) {
+        return directory.resolve(String.format("transactions-%s-%d.ndjson.gz", month, id));
+    }
+
+    // Archived transactions matching the filters (same meaning as in the listing), oldest month first
+    public void search(String currency, BigDecimal minAmount, BigDecimal maxAmount,
+                       String startDate, String endDate, Consumer<TransactionDTO> consumer) throws IOException {
+        LocalDateTime start = startDate == null ? null : TransactionSpecifications.parseDateTime(startDate);
+        LocalDateTime end = endDate == null ? null : TransactionSpecifications.parseDateTime(endDate);
+        for (Path file : files(start, end)) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(file), BUFFER_SIZE);
+                 MappingIterator<TransactionDTO> rows = reader.readValues(in)) {
+                while (rows.hasNext()) {
+                    TransactionDTO transaction = rows.next();
+                    if ((currency == null || currency.equals(transaction.getCurrency()))
+                            && (minAmount == null || transaction.getAmount().compareTo(minAmount) >= 0)
+                            && (maxAmount == null || transaction.getAmount().compareTo(maxAmount) <= 0)
+                            && (start == null || !transaction.getTimestamp().isBefore(start))
+                            && (end == null || !transaction.getTimestamp().isAfter(end))) {
+                        consumer.accept(transaction);
+                    }
+                }
+            }
+        }
+    }
+
+    // Files whose month overlaps [start, end], in month order
+    private List<Path> files(LocalDateTime start, LocalDateTime end) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(file -> {
+                        Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                        if (!matcher.matches()) {
+                            return false;
+                        }
+                        YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+                        return (end == null || !month.atDay(1).atStartOfDay().isAfter(end))
+                                && (start == null || month.plusMonths(1).atDay(1).atStartOfDay().isAfter(start));
+                    })
+                    .sorted(Comparator.comparing(file -> file.getFileName().toString()))
+                    .toList();
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package polito.wa2.es_transazioni.service;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import polito.wa2.es_transazioni.repository.TransactionRepository;
+
+// Per-table change counter backing the ETag of the listings. It is a Postgres sequence, so every instance
+// sees the same value, and it is bumped only after a write commits: a reader can at worst pair the old
+// value with the new rows (one extra full response later), never the new value with the old rows.
+@Service
+public class TransactionChangeCounter {
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionTemplate requiresNew;
+
+    public TransactionChangeCounter(TransactionRepository transactionRepository, PlatformTransactionManager transactionManager) {
+        this.transactionRepository = transactionRepository;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        // the surrounding transaction has already committed when the bump runs
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public long current() {
+        return transactionRepository.currentChange();
+    }
+
+    // Called within a write transaction; one bump per transaction is enough
+    public void markChanged() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump();
+            return;
+        }
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bump();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TransactionChangeCounter.this);
+            }
+        });
+    }
+
+    private void bump() {
+        requiresNew.executeWithoutResult(status -> transactionRepository.nextChange());
+    }
+}
@@ -0,0 +1,47 @@
+package polito.wa2.es_transazioni.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+// Opaque continuation token for keyset paging: the sort column, its direction and the
+// (value, id) pair of the last row returned, so the next page can seek right after it
+final class TransactionCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private final String sortBy;
+    private final boolean descending;
+    private final Long id;
+    private final String value;
+
+    TransactionCursor(String sortBy, boolean descending, Long id, String value) {
+        this.sortBy = sortBy;
+        this.descending = descending;
+        this.id = id;
+        this.value = value;
+    }
+
+    String encode() {
+        String raw = sortBy + SEPARATOR + (descending ? "desc" : "asc") + SEPARATOR + id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static TransactionCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new TransactionCursor(parts[0], parts[1].equals("desc"), Long.valueOf(parts[2]), parts[3]);
+        } catch (IllegalArgumentException ex) {
+            // also covers bad Base64 and NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    String getSortBy() { return sortBy; }
+    boolean isDescending() { return descending; }
+    Long getId() { return id; }
+    String getValue() { return value; }
+}
@@ -0,0 +1,14 @@
+package polito.wa2.es_transazioni.service;
+
+import polito.wa2.es_transazioni.DTOs.TransactionEventDTO;
+
+import java.util.List;
+
+// External sink of the event stream (a Kafka producer, for instance). The relay calls every publisher
+// bean with each batch, in published_seq order, before committing the batch: a failing publisher rolls
+// the batch back and it is retried, so sinks get at-least-once delivery and should dedupe by sequence. The
+// retry gives the same events the same sequences: no event can be ordered before them any more (see V15).
+public interface TransactionEventPublisher {
+
+    void publish(List<TransactionEventDTO> events);
+}
@@ -0,0 +1,120 @@
+package polito.wa2.es_transazioni.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+import polito.wa2.es_transazioni.DTOs.TransactionEventDTO;
+import polito.wa2.es_transazioni.entity.TransactionEvent;
+import polito.wa2.es_transazioni.repository.TransactionEventRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+// Transactional outbox of the transactions table. TransactionService records its changes here within its
+// write transactions; the relay below publishes them, in order, once they are committed.
+@Service
+@Timed("transaction.service")
+public class TransactionEventService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionEventService.class);
+    // pg_try_advisory_xact_lock key of the relay
+    private static final long RELAY_LOCK = 0x7478_6576_656e_7473L;
+
+    private final TransactionEventRepository eventRepository;
+    private final List<TransactionEventPublisher> publishers;
+    private final ObjectMapper objectMapper;
+    private final int relayBatchSize;
+    private final Duration retention;
+
+    public TransactionEventService(TransactionEventRepository eventRepository,
+                                   List<TransactionEventPublisher> publishers,
+                                   ObjectMapper objectMapper,
+                                   @Value("${app.events.relay-batch-size:500}") int relayBatchSize,
+                                   @Value("${app.events.retention:P7D}") Duration retention) {
+        this.eventRepository = eventRepository;
+        this.publishers = publishers;
+        this.objectMapper = objectMapper;
+        this.relayBatchSize = relayBatchSize;
+        this.retention = retention;
+    }
+
+    // Outbox writes, called by TransactionService within its write transactions
+
+    public void recordChanges(TransactionEvent.Type type, Collection<TransactionDTO> transactions) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        List<TransactionEvent> events = new ArrayList<>(transactions.size());
+        for (TransactionDTO transaction : transactions) {
+            events.add(new TransactionEvent(type, transaction.getId(), toJson(transaction), now));
+        }
+        eventRepository.saveAll(events);
+    }
+
+    public void recordCleared() {
+        eventRepository.save(new TransactionEvent(TransactionEvent.Type.CLEARED, null, null, LocalDateTime.now(ZoneOffset.UTC)));
+    }
+
+    // Relay: numbers the committed events that have no published_seq yet, continuing from the last one, in the
+    // order of the transactions that wrote them. A long-running write transaction holds the relay back until it
+    // ends. The advisory lock is held until this transaction commits, so batches become visible in sequence order.
+    @Scheduled(fixedDelayString = "${app.events.relay-interval:PT0.2S}")
+    @Transactional
+    public void relay() {
+        if (!eventRepository.tryRelayLock(RELAY_LOCK)) {
+            return;
+        }
+        List<TransactionEvent> pending = eventRepository.findUnpublished(relayBatchSize);
+        if (pending.isEmpty()) {
+            return;
+        }
+        long sequence = eventRepository.lastPublishedSeq();
+        List<TransactionEventDTO> published = new ArrayList<>(pending.size());
+        for (TransactionEvent event : pending) {
+            event.setPublishedSeq(++sequence);
+            published.add(toDTO(event));
+        }
+        for (TransactionEventPublisher publisher : publishers) {
+            publisher.publish(published);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.events.cleanup-interval:PT1H}")
+    @Transactional
+    public void deleteOldEvents() {
+        int deleted = eventRepository.deletePublishedBefore(LocalDateTime.now(ZoneOffset.UTC).minus(retention));
+        if (deleted > 0) {
+            logger.info("Deleted {} published transaction events", deleted);
+        }
+    }
+
+    TransactionEventDTO toDTO(TransactionEvent event) {
+        TransactionDTO transaction = null;
+        if (event.getPayload() != null) {
+            try {
+                transaction = objectMapper.readValue(event.getPayload(), TransactionDTO.class);
+            } catch (JsonProcessingException ex) {
+                throw new IllegalStateException("Unreadable payload of transaction event " + event.getId(), ex);
+            }
+        }
+        return new TransactionEventDTO(event.getPublishedSeq(), event.getType().name(), event.getTransactionId(),
+                transaction, event.getCreatedAt());
+    }
+
+    private String toJson(TransactionDTO transaction) {
+        try {
+            return objectMapper.writeValueAsString(transaction);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize transaction " + transaction.getId(), ex);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package polito.wa2.es_transazioni.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import polito.wa2.es_transazioni.DTOs.TransactionEventDTO;
+import polito.wa2.es_transazioni.entity.TransactionEvent;
+import polito.wa2.es_transazioni.repository.TransactionEventRepository;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Read side of the outbox on this instance. One poller tails the published events into a bounded buffer
+// and wakes up the waiting consumers, so any number of SSE and long-poll clients cost a single indexed
+// query per poll interval; only consumers resuming from further back than the buffer read the table.
+@Service
+public class TransactionEventStream implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionEventStream.class);
+    private static final int PAGE_SIZE = 500;
+
+    private final TransactionEventRepository eventRepository;
+    private final TransactionEventService eventService;
+    private final int bufferSize;
+    private final Duration heartbeat;
+
+    // guards recent and lastSequence; a ReentrantLock so that waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private final ArrayDeque<TransactionEventDTO> recent = new ArrayDeque<>();
+    private long lastSequence;
+    private volatile boolean running;
+
+    public TransactionEventStream(TransactionEventRepository eventRepository,
+                                  TransactionEventService eventService,
+                                  @Value("${app.events.buffer-size:10000}") int bufferSize,
+                                  @Value("${app.events.heartbeat:PT15S}") Duration heartbeat) {
+        this.eventRepository = eventRepository;
+        this.eventService = eventService;
+        this.bufferSize = bufferSize;
+        this.heartbeat = heartbeat;
+    }
+
+    // Starts tailing from the current end of the stream. On start, which comes before the web server's (see getPhase),
+    // and not in the constructor: creating the context must not need the database, e.g. for the CDS training run
+    @Override
+    public void start() {
+        long last = eventRepository.lastPublishedSeq();
+        lock.lock();
+        try {
+            lastSequence = last;
+        } finally {
+            lock.unlock();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.events.poll-interval:PT0.2S}")
+    public void poll() {
+        long after = lastPublishedSequence();
+        List<TransactionEventDTO> events = toDTOs(eventRepository.findPublishedAfter(after, PAGE_SIZE));
+        if (events.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (TransactionEventDTO event : events) {
+                recent.addLast(event);
+            }
+            while (recent.size() > bufferSize) {
+                recent.removeFirst();
+            }
+            lastSequence = events.get(events.size() - 1).getSequence();
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long lastPublishedSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Up to limit events with a sequence greater than after, oldest first
+    public List<TransactionEventDTO> eventsAfter(long after, int limit) {
+        lock.lock();
+        try {
+            if (after >= lastSequence) {
+                return List.of();
+            }
+            // sequences have no gaps, so the buffer can serve any position from just before its first event
+            if (!recent.isEmpty() && recent.peekFirst().getSequence() <= after + 1) {
+                List<TransactionEventDTO> events = new ArrayList<>(Math.min(limit, (int) (lastSequence - after)));
+                for (TransactionEventDTO event : recent) {
+                    if (event.getSequence() > after) {
+                        events.add(event);
+                        if (events.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+                return events;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return toDTOs(eventRepository.findPublishedAfter(after, limit));
+    }
+
+    // Waits until an event after the given sequence has been polled; false on timeout
+    public boolean awaitEventsAfter(long after, Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (lastSequence <= after) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = published.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Server-Sent Events from the given sequence on; each event carries its sequence as id,
+    // so a reconnecting EventSource resumes where it stopped through Last-Event-ID
+    public SseEmitter subscribe(long after) {
+        SseEmitter emitter = new SseEmitter();
+        AtomicBoolean open = new AtomicBoolean(true);
+        emitter.onCompletion(() -> open.set(false));
+        emitter.onTimeout(() -> open.set(false));
+        emitter.onError(ex -> open.set(false));
+        Thread.ofVirtual().name("event-stream").start(() -> pump(emitter, after, open));
+        return emitter;
+    }
+
+    private void pump(SseEmitter emitter, long after, AtomicBoolean open) {
+        long position = after;
+        try {
+            while (open.get()) {
+                List<TransactionEventDTO> events = eventsAfter(position, PAGE_SIZE);
+                if (events.isEmpty()) {
+                    if (!awaitEventsAfter(position, heartbeat)) {
+                        // also how a closed connection is noticed when nothing happens
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                    }
+                    continue;
+                }
+                for (TransactionEventDTO event : events) {
+                    emitter.send(SseEmitter.event()
+                            .id(String.valueOf(event.getSequence()))
+                            .name(event.getType().toLowerCase())
+                            .data(event, MediaType.APPLICATION_JSON));
+                    position = event.getSequence();
+                }
+            }
+        } catch (IOException | IllegalStateException ex) {
+            logger.debug("Event stream closed at sequence {}: {}", position, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            emitter.complete();
+        }
+    }
+
+    private List<TransactionEventDTO> toDTOs(List<TransactionEvent> events) {
+        return events.stream().map(eventService::toDTO).toList();
+    }
+}
@@ -0,0 +1,96 @@
+package polito.wa2.es_transazioni.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+// Writes transactions one at a time to an output stream as NDJSON or CSV, optionally gzipped.
+// Nothing is kept after a row has been written, so memory does not depend on the number of rows.
+public class TransactionExportWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "id,amount,currency,senderAccount,receiverAccount,timestamp,description\n";
+
+    private final ObjectMapper objectMapper;
+    private final ExportFormat format;
+    private final OutputStream out;
+    private final JsonGenerator json;
+    private final Writer csv;
+
+    public TransactionExportWriter(ObjectMapper objectMapper, ExportFormat format, boolean gzip, OutputStream target) throws IOException {
+        this.objectMapper = objectMapper;
+        this.format = format;
+        this.out = gzip ? new GZIPOutputStream(target, BUFFER_SIZE) : new BufferedOutputStream(target, BUFFER_SIZE);
+        if (format == ExportFormat.NDJSON) {
+            this.json = objectMapper.getFactory().createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.csv = null;
+        } else {
+            this.json = null;
+            this.csv = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            this.csv.write(CSV_HEADER);
+        }
+    }
+
+    public void write(TransactionDTO transaction) {
+        try {
+            if (format == ExportFormat.NDJSON) {
+                objectMapper.writeValue(json, transaction);
+                json.writeRaw('\n');
+            } else {
+                csv.write(String.valueOf(transaction.getId()));
+                csv.write(',');
+                csv.write(transaction.getAmount() == null ? "" : transaction.getAmount().toPlainString());
+                csv.write(',');
+                writeCsvField(transaction.getCurrency());
+                csv.write(',');
+                writeCsvField(transaction.getSenderAccount());
+                csv.write(',');
+                writeCsvField(transaction.getReceiverAccount());
+                csv.write(',');
+                writeCsvField(transaction.getTimestamp() == null ? null : transaction.getTimestamp().toString());
+                csv.write(',');
+                writeCsvField(transaction.getDescription());
+                csv.write('\n');
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void writeCsvField(String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            csv.write(value);
+            return;
+        }
+        csv.write('"');
+        csv.write(value.replace("\"", "\"\""));
+        csv.write('"');
+    }
+
+    // Flushes everything and ends the gzip stream, but leaves the target stream open for its owner
+    @Override
+    public void close() throws IOException {
+        if (json != null) {
+            json.flush();
+        } else {
+            csv.flush();
+        }
+        if (out instanceof GZIPOutputStream gzip) {
+            gzip.finish();
+        }
+        out.flush();
+    }
+}
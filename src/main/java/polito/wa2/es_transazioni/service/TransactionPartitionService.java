@@ -0,0 +1,214 @@
+package polito.wa2.es_transazioni.service;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.jpa.HibernateHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+import polito.wa2.es_transazioni.entity.Amounts;
+import polito.wa2.es_transazioni.repository.TransactionRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Keeps the monthly partitions of transactions (see V10 and V16) ahead of the writes, moves the rows that
+// landed in the default partition into partitions of their own, and moves the months older than
+// app.partitions.archive-after-months to the TransactionArchive: detach, write the file, drop the table.
+// None of this runs on the request path: writes only go through checkWritable, which needs no database.
+// Archived rows leave the statistics along with their month, but stay in the account balances: a balance
+// covers every transfer of the account, archived or not.
+@Service
+public class TransactionPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPartitionService.class);
+    private static final Pattern PARTITION = Pattern.compile("transactions_y(\\d{4})m(\\d{2})");
+    private static final Pattern DETACHED = Pattern.compile("transactions_archiving_y(\\d{4})m(\\d{2})_(\\d+)");
+    // pg_try_advisory_xact_lock key of the archiver
+    private static final long ARCHIVE_LOCK = 0x7478_6172_6368_6976L;
+
+    private final TransactionRepository transactionRepository;
+    private final TransactionArchive archive;
+    private final TransactionChangeCounter changeCounter;
+    private final TransactionStatisticsService statisticsService;
+    private final EntityManager entityManager;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate requiresNew;
+    private final int monthsAhead;
+    private final int archiveAfterMonths;
+    private final int fetchSize;
+    // Months that had a partition at the last maintenance run; one that disappears was archived
+    private final Set<YearMonth> partitions = ConcurrentHashMap.newKeySet();
+
+    public TransactionPartitionService(TransactionRepository transactionRepository,
+                                       TransactionArchive archive,
+                                       TransactionChangeCounter changeCounter,
+                                       TransactionStatisticsService statisticsService,
+                                       EntityManager entityManager,
+                                       CacheManager cacheManager,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${app.partitions.months-ahead:3}") int monthsAhead,
+                                       @Value("${app.partitions.archive-after-months:0}") int archiveAfterMonths,
+                                       @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        this.transactionRepository = transactionRepository;
+        this.archive = archive;
+        this.changeCounter = changeCounter;
+        this.statisticsService = statisticsService;
+        this.entityManager = entityManager;
+        this.cacheManager = cacheManager;
+        this.requiresNew = new TransactionTemplate(transactionManager);
+        // every partition change commits on its own, so it holds its locks as briefly as possible
+        this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.monthsAhead = monthsAhead;
+        this.archiveAfterMonths = archiveAfterMonths;
+        this.fetchSize = fetchSize;
+    }
+
+    // Called by TransactionService before it writes a row with this timestamp. A month without a partition
+    // is fine (the row goes to the default partition until the next maintenance run), but a month past
+    // app.partitions.archive-after-months is refused: its partition is, or is about to be, archived.
+    public void checkWritable(LocalDateTime timestamp) {
+        if (timestamp == null || archiveAfterMonths <= 0) {
+            return;
+        }
+        YearMonth month = YearMonth.from(timestamp);
+        if (month.isBefore(YearMonth.now().minusMonths(archiveAfterMonths))) {
+            throw new IllegalArgumentException("Transactions of " + month + " are archived and can no longer be written");
+        }
+    }
+
+    // Also runs right after startup, as the first fixed-delay run is not delayed
+    @Scheduled(fixedDelayString = "${app.partitions.maintenance-interval:PT1H}")
+    public void maintain() {
+        List<String> attached = transactionRepository.findPartitions();
+        Set<YearMonth> months = new HashSet<>();
+        for (String partition : attached) {
+            Matcher matcher = PARTITION.matcher(partition);
+            if (matcher.matches()) {
+                months.add(YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2))));
+            }
+        }
+        // a month that disappeared was archived by another instance
+        boolean archived = partitions.retainAll(months);
+        partitions.addAll(months);
+
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i), months);
+        }
+        // rows written before their month had a partition; creating it moves them out of the default partition
+        for (String month : transactionRepository.findDefaultPartitionMonths()) {
+            createPartition(YearMonth.parse(month), months);
+        }
+        if (archiveAfterMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(archiveAfterMonths);
+            for (YearMonth month : months) {
+                if (month.isBefore(oldestKept)) {
+                    requiresNew.executeWithoutResult(status -> {
+                        if (transactionRepository.detachPartition(month.atDay(1)) != null) {
+                            statisticsService.recordArchived(month.atDay(1).atStartOfDay(),
+                                    month.plusMonths(1).atDay(1).atStartOfDay());
+                        }
+                        changeCounter.markChanged();
+                    });
+                    partitions.remove(month);
+                    archived = true;
+                }
+            }
+        }
+        if (archived) {
+            evictCachedTransactions();
+        }
+        if (archiveAfterMonths > 0) {
+            // also picks up tables left detached by an interrupted run
+            for (String table : transactionRepository.findDetachedPartitions()) {
+                archive(table);
+            }
+        }
+    }
+
+    private void createPartition(YearMonth month, Set<YearMonth> months) {
+        if (months.add(month)) {
+            requiresNew.executeWithoutResult(status -> transactionRepository.createPartition(month.atDay(1)));
+            partitions.add(month);
+        }
+    }
+
+    // The by-id cache of this instance would keep serving archived rows until they expire; which ids left is
+    // not known without reading the whole month, so everything goes
+    private void evictCachedTransactions() {
+        Cache cache = cacheManager.getCache(TransactionService.TRANSACTIONS_CACHE);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    // Writes a detached partition to the archive and drops it, holding the archive lock throughout, so two
+    // instances never archive the same table. The table is only dropped once the file has been read back and
+    // holds every row of it; if anything fails the table stays, and the next run writes the same file again.
+    private void archive(String table) {
+        Matcher matcher = DETACHED.matcher(table);
+        if (!matcher.matches()) {
+            return;
+        }
+        YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+        long id = Long.parseLong(matcher.group(3));
+        requiresNew.executeWithoutResult(status -> {
+            // another instance may have archived it since it was listed
+            if (!transactionRepository.tryArchiveLock(ARCHIVE_LOCK) || !Boolean.TRUE.equals(entityManager
+                    .createNativeQuery("SELECT to_regclass(:table) IS NOT NULL")
+                    .setParameter("table", table).getSingleResult())) {
+                return;
+            }
+            // table comes from pg_class and matched DETACHED, so it is safe to inline
+            long count = ((Number) entityManager.createNativeQuery("SELECT count(*) FROM " + table)
+                    .getSingleResult()).longValue();
+            try (Stream<?> rows = entityManager.createNativeQuery("""
+                            SELECT id, amount, currency, description, timestamp, sender_account, receiver_account
+                            FROM %s ORDER BY timestamp, id""".formatted(table))
+                    .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                    .getResultStream()) {
+                long written = archive.write(month, id, rows.map(row -> toDTO((Object[]) row)));
+                long readBack = archive.count(month, id);
+                if (written != count || readBack != count) {
+                    throw new IllegalStateException("Archive of " + table + " holds " + readBack + " of its "
+                            + count + " transactions, keeping the table");
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            // only once the cursor on it is closed
+            entityManager.createNativeQuery("DROP TABLE " + table).executeUpdate();
+            logger.info("Archived {} transactions of {} from {}", count, month, table);
+        });
+    }
+
+    private static TransactionDTO toDTO(Object[] row) {
+        TransactionDTO dto = new TransactionDTO();
+        String currency = (String) row[2];
+        dto.setId(((Number) row[0]).longValue());
+        dto.setAmount(Amounts.toDecimal(((Number) row[1]).longValue(), currency));
+        dto.setCurrency(currency);
+        dto.setDescription((String) row[3]);
+        dto.setTimestamp(row[4] instanceof java.sql.Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) row[4]);
+        dto.setSenderAccount((String) row[5]);
+        dto.setReceiverAccount((String) row[6]);
+        return dto;
+    }
+}
@@ -1,44 +1,131 @@
 package polito.wa2.es_transazioni.service;
 
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
+import polito.wa2.es_transazioni.DTOs.BatchItemResultDTO;
+import polito.wa2.es_transazioni.DTOs.BatchResultDTO;
+import polito.wa2.es_transazioni.DTOs.CursorPageDTO;
 import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+import polito.wa2.es_transazioni.entity.Amounts;
 import polito.wa2.es_transazioni.entity.Transaction;
+import polito.wa2.es_transazioni.entity.TransactionEvent;
 import polito.wa2.es_transazioni.repository.TransactionRepository;
+import polito.wa2.es_transazioni.repository.TransactionRow;
+import polito.wa2.es_transazioni.repository.TransactionSpecifications;
+import polito.wa2.es_transazioni.service.rules.TransactionRejectedException;
+import polito.wa2.es_transazioni.service.rules.TransactionRuleEngine;
 
-import java.time.OffsetDateTime;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @Service
+@Timed("transaction.service")
 public class TransactionService {
 
+    // Per instance, bounded by size and TTL (see spring.cache.caffeine.spec). Only this instance's writes evict
+    // their entries; other instances' writes are seen once the TTL expires, archived months are evicted by
+    // TransactionPartitionService
+    public static final String TRANSACTIONS_CACHE = "transactions";
+
     private final TransactionRepository transactionRepository;
+    private final TransactionStatisticsService statisticsService;
+    private final AccountBalanceService balanceService;
+    private final TransactionChangeCounter changeCounter;
+    private final TransactionEventService eventService;
+    private final TransactionPartitionService partitionService;
+    private final TransactionRuleEngine ruleEngine;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final int jdbcBatchSize;
+    private final int maxBatchSize;
+    private final int exportFetchSize;
+    private final int maxPageSize;
 
-    public TransactionService(TransactionRepository transactionRepository) {
+    public TransactionService(TransactionRepository transactionRepository,
+                              TransactionStatisticsService statisticsService,
+                              AccountBalanceService balanceService,
+                              TransactionChangeCounter changeCounter,
+                              TransactionEventService eventService,
+                              TransactionPartitionService partitionService,
+                              TransactionRuleEngine ruleEngine,
+                              EntityManager entityManager,
+                              Validator validator,
+                              @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int jdbcBatchSize,
+                              @Value("${app.batch.max-size:10000}") int maxBatchSize,
+                              @Value("${app.export.fetch-size:1000}") int exportFetchSize,
+                              @Value("${app.paging.max-size:1000}") int maxPageSize) {
         this.transactionRepository = transactionRepository;
+        this.statisticsService = statisticsService;
+        this.balanceService = balanceService;
+        this.changeCounter = changeCounter;
+        this.eventService = eventService;
+        this.partitionService = partitionService;
+        this.ruleEngine = ruleEngine;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.jdbcBatchSize = jdbcBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.exportFetchSize = exportFetchSize;
+        this.maxPageSize = maxPageSize;
     }
 
-    // Convert Entity to DTO and vice versa
-    private TransactionDTO convertToDTO(Transaction transaction) {
+    // Convert Entity to DTO and vice versa (package-private for the JMH benchmarks)
+    TransactionDTO convertToDTO(Transaction transaction) {
         TransactionDTO dto = new TransactionDTO();
         dto.setId(transaction.getId());
-        dto.setAmount(transaction.getAmount());
+        dto.setAmount(Amounts.toDecimal(transaction.getAmount(), transaction.getCurrency()));
         dto.setCurrency(transaction.getCurrency());
         dto.setDescription(transaction.getDescription());
         dto.setTimestamp(transaction.getTimestamp());
         dto.setReceiverAccount(transaction.getReceiverAccount());
         dto.setSenderAccount(transaction.getSenderAccount());
+        dto.setVersion(transaction.getVersion());
+        dto.setLastModified(transaction.getLastModified());
+        return dto;
+    }
+
+    TransactionDTO convertToDTO(TransactionRow row) {
+        TransactionDTO dto = new TransactionDTO();
+        dto.setId(row.id());
+        dto.setAmount(Amounts.toDecimal(row.amount(), row.currency()));
+        dto.setCurrency(row.currency());
+        dto.setDescription(row.description());
+        dto.setTimestamp(row.timestamp());
+        dto.setReceiverAccount(row.receiverAccount());
+        dto.setSenderAccount(row.senderAccount());
+        dto.setVersion(row.version());
+        dto.setLastModified(row.lastModified());
         return dto;
     }
 
-    private Transaction convertToEntity(TransactionDTO dto) {
+    Transaction convertToEntity(TransactionDTO dto) {
         Transaction transaction = new Transaction();
-        transaction.setAmount(dto.getAmount());
+        transaction.setAmount(amountOf(dto));
         transaction.setCurrency(dto.getCurrency());
         transaction.setDescription(dto.getDescription());
         transaction.setTimestamp(dto.getTimestamp());
@@ -50,44 +137,290 @@ public class TransactionService {
     // Create, Read, Update, Delete methods
 
     // Create
+    @Transactional
     public TransactionDTO createTransaction(TransactionDTO transactionDTO) {
         Transaction transaction = convertToEntity(transactionDTO);
+        ruleEngine.check(transaction);
+        partitionService.checkWritable(transaction.getTimestamp());
         Transaction savedTransaction = transactionRepository.save(transaction);
-        return convertToDTO(savedTransaction);
+        statisticsService.recordCreated(List.of(savedTransaction));
+        balanceService.recordCreated(List.of(savedTransaction));
+        TransactionDTO created = convertToDTO(savedTransaction);
+        eventService.recordChanges(TransactionEvent.Type.CREATED, List.of(created));
+        changeCounter.markChanged();
+        return created;
+    }
+
+    // Largest batch createTransactions accepts; lets streaming readers stop before buffering more
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    // Create many: every item is validated on its own, valid ones are inserted in JDBC batches
+    // and the persistence context is flushed and cleared after each batch to keep memory flat
+    @Transactional
+    public BatchResultDTO createTransactions(List<TransactionDTO> transactionDTOs) {
+        if (transactionDTOs.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch cannot exceed " + maxBatchSize + " transactions");
+        }
+
+        List<BatchItemResultDTO> results = new ArrayList<>(transactionDTOs.size());
+        List<Transaction> pending = new ArrayList<>(jdbcBatchSize);
+        for (int i = 0; i < transactionDTOs.size(); i++) {
+            TransactionDTO dto = transactionDTOs.get(i);
+            Map<String, String> errors = validate(dto);
+            if (!errors.isEmpty()) {
+                results.add(BatchItemResultDTO.rejected(i, errors));
+                continue;
+            }
+
+            Transaction transaction = convertToEntity(dto);
+            try {
+                partitionService.checkWritable(transaction.getTimestamp());
+            } catch (IllegalArgumentException ex) {
+                results.add(BatchItemResultDTO.rejected(i, Map.of("timestamp", ex.getMessage())));
+                continue;
+            }
+            try {
+                ruleEngine.check(transaction);
+            } catch (TransactionRejectedException ex) {
+                results.add(BatchItemResultDTO.rejected(i, Map.of(ex.getRule(), ex.getMessage())));
+                continue;
+            }
+            entityManager.persist(transaction);
+            results.add(BatchItemResultDTO.created(i, transaction.getId()));
+            pending.add(transaction);
+
+            if (pending.size() == jdbcBatchSize) {
+                flushBatch(pending);
+            }
+        }
+        flushBatch(pending);
+
+        return new BatchResultDTO(results);
     }
 
-    // Read all with pagination, sorting, and filtering
+    private void flushBatch(List<Transaction> pending) {
+        statisticsService.recordCreated(pending);
+        balanceService.recordCreated(pending);
+        if (!pending.isEmpty()) {
+            eventService.recordChanges(TransactionEvent.Type.CREATED, pending.stream().map(this::convertToDTO).toList());
+            changeCounter.markChanged();
+        }
+        entityManager.flush();
+        entityManager.clear();
+        pending.clear();
+    }
+
+    // Fixed-point amount of a validated DTO; rejects more decimals than the currency has
+    private static long amountOf(TransactionDTO dto) {
+        if (!Amounts.fitsCurrency(dto.getAmount(), dto.getCurrency())) {
+            throw new IllegalArgumentException("Amount cannot have more than " + Amounts.currencyScale(dto.getCurrency())
+                    + " decimals in " + dto.getCurrency());
+        }
+        return Amounts.toUnits(dto.getAmount());
+    }
+
+    private Map<String, String> validate(TransactionDTO dto) {
+        Map<String, String> errors = new HashMap<>();
+        if (dto == null) {
+            errors.put("transaction", "Transaction is required");
+            return errors;
+        }
+        Set<ConstraintViolation<TransactionDTO>> violations = validator.validate(dto);
+        for (ConstraintViolation<TransactionDTO> violation : violations) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        if (errors.isEmpty()) {
+            try {
+                amountOf(dto);
+            } catch (IllegalArgumentException ex) {
+                errors.put("amount", ex.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    // Read all with pagination, sorting, and filtering. Reads project straight into TransactionRow:
+    // no managed entities, and read-only transactions skip flushing and dirty checking.
+    @Transactional(readOnly = true)
     public List<TransactionDTO> getAllTransactions(
             int page, int size, String sortBy, String order,
-            String currency, Double minAmount, Double maxAmount,
-            String startDate, String endDate) {
+            String currency, BigDecimal minAmount, BigDecimal maxAmount,
+            String startDate, String endDate, String q) {
 
-        Sort sort = order.equalsIgnoreCase("desc") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        checkPageSize(size);
+        if (page < 0) {
+            throw new IllegalArgumentException("Page must be at least 0");
+        }
+        if ((long) page * size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Page " + page + " is beyond the offset paging range, use paging=keyset");
+        }
+        Specification<Transaction> spec = TransactionSpecifications.filter(currency, minAmount, maxAmount, startDate, endDate)
+                .and(TransactionSpecifications.search(q));
+        Sort sort;
+        if (sortBy.equals(RELEVANCE)) {
+            if (q == null || q.isBlank()) {
+                throw new IllegalArgumentException("Sorting by relevance requires a search query (q)");
+            }
+            sort = Sort.unsorted();
+            spec = spec.and(TransactionSpecifications.orderByRelevance(q));
+        } else {
+            sort = order.equalsIgnoreCase("desc") ? Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        }
         Pageable pageable = PageRequest.of(page, size, sort);
 
-        Specification<Transaction> spec = Specification.allOf();
+        // the count query of findAll(spec, pageable) is skipped: the total is never returned
+        List<TransactionRow> rows = transactionRepository.findRows(spec, pageable.getSort(), pageable.getOffset(), size);
+        return rows.stream().map(this::convertToDTO).toList();
+    }
+
+    // Read all with keyset (seek) pagination: no OFFSET and no COUNT query, so every page costs the same.
+    // The order is always (sortBy, id) so that rows with the same sort value are never skipped or repeated.
+    @Transactional(readOnly = true)
+    public CursorPageDTO getTransactionsAfter(
+            String cursor, int size, String sortBy, String order,
+            String currency, BigDecimal minAmount, BigDecimal maxAmount,
+            String startDate, String endDate, String q) {
+
+        checkPageSize(size);
+        TransactionCursor after = cursor == null || cursor.isBlank() ? null : TransactionCursor.decode(cursor);
+        if (after != null) {
+            // the cursor carries the ordering it was created with
+            sortBy = after.getSortBy();
+            order = after.isDescending() ? "desc" : "asc";
+        }
+        if (!KEYSET_SORT_FIELDS.containsKey(sortBy)) {
+            throw new IllegalArgumentException("Keyset paging cannot sort by '" + sortBy + "'");
+        }
+        boolean descending = order.equalsIgnoreCase("desc");
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sort = sortBy.equals("id") ? Sort.by(direction, "id") : Sort.by(direction, sortBy, "id");
+
+        Specification<Transaction> spec = TransactionSpecifications.filter(currency, minAmount, maxAmount, startDate, endDate)
+                .and(TransactionSpecifications.search(q));
+        if (after != null) {
+            spec = spec.and(seekAfter(after));
+        }
 
-        if (currency != null) {
-            spec = spec.and((root, query, cb) -> cb.equal(root.get("currency"), currency));
+        // fetch one extra row to know whether another page exists
+        List<TransactionRow> rows = transactionRepository.findRows(spec, sort, 0, size + 1);
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            TransactionRow last = rows.get(size - 1);
+            Object lastValue = KEYSET_SORT_FIELDS.get(sortBy).getter().apply(last);
+            nextCursor = new TransactionCursor(sortBy, descending, last.id(), String.valueOf(lastValue)).encode();
         }
-        if (minAmount != null) {
-            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("amount"), minAmount));
+        return new CursorPageDTO(rows.stream().map(this::convertToDTO).toList(), nextCursor);
+    }
+
+    // Bounds every page, whatever the paging: the page is read into memory in one round trip
+    private void checkPageSize(int size) {
+        if (size < 1 || size > maxPageSize) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + maxPageSize);
+        }
+    }
+
+    // Statement of one account, newest first, with keyset paging on (timestamp, id).
+    // direction: "both", "sent" (account is the sender) or "received" (account is the receiver)
+    @Transactional(readOnly = true)
+    public CursorPageDTO getAccountTransactions(String account, String direction, String cursor, int size) {
+        checkPageSize(size);
+        LocalDateTime beforeTimestamp = ACCOUNT_FIRST_PAGE_TIMESTAMP;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null && !cursor.isBlank()) {
+            TransactionCursor after = TransactionCursor.decode(cursor);
+            if (!after.getSortBy().equals("timestamp") || !after.isDescending()) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            beforeTimestamp = TransactionSpecifications.parseDateTime(after.getValue());
+            beforeId = after.getId();
+        }
+
+        // fetch one extra row to know whether another page exists
+        List<Transaction> transactions = switch (direction.toLowerCase()) {
+            case "both" -> transactionRepository.findByAccountBefore(account, beforeTimestamp, beforeId, size + 1);
+            case "sent" -> transactionRepository.findSentBefore(account, beforeTimestamp, beforeId, size + 1);
+            case "received" -> transactionRepository.findReceivedBefore(account, beforeTimestamp, beforeId, size + 1);
+            default -> throw new IllegalArgumentException("Direction must be 'both', 'sent' or 'received'");
+        };
+        String nextCursor = null;
+        if (transactions.size() > size) {
+            transactions = transactions.subList(0, size);
+            Transaction last = transactions.get(size - 1);
+            nextCursor = new TransactionCursor("timestamp", true, last.getId(), String.valueOf(last.getTimestamp())).encode();
         }
-        if (maxAmount != null) {
-            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("amount"), maxAmount));
+        return new CursorPageDTO(transactions.stream().map(this::convertToDTO).toList(), nextCursor);
+    }
+
+    // Stream every matching transaction to the consumer through a server-side cursor. Rows are fetched
+    // fetchSize at a time as projections, which the persistence context never holds, so heap use stays flat.
+    @Transactional(readOnly = true)
+    public void exportTransactions(
+            String currency, BigDecimal minAmount, BigDecimal maxAmount,
+            String startDate, String endDate, String q,
+            Consumer<TransactionDTO> consumer) {
+
+        Specification<Transaction> spec = TransactionSpecifications.filter(currency, minAmount, maxAmount, startDate, endDate)
+                .and(TransactionSpecifications.search(q));
+
+        Sort sort = Sort.by("timestamp", "id");
+        try (Stream<TransactionRow> rows = transactionRepository.streamRows(spec, sort, exportFetchSize)) {
+            for (Iterator<TransactionRow> it = rows.iterator(); it.hasNext(); ) {
+                consumer.accept(convertToDTO(it.next()));
+            }
         }
-        if (startDate != null) {
-            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("timestamp"), OffsetDateTime.parse(startDate)));
+    }
+
+    // (sortBy > value) OR (sortBy = value AND id > lastId), mirrored for descending order
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Specification<Transaction> seekAfter(TransactionCursor cursor) {
+        KeysetField field = KEYSET_SORT_FIELDS.get(cursor.getSortBy());
+        if (field == null) {
+            throw new IllegalArgumentException("Invalid cursor");
         }
-        if (endDate != null) {
-            spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("timestamp"), OffsetDateTime.parse(endDate)));
+        Comparable value;
+        try {
+            value = field.parser().apply(cursor.getValue());
+        } catch (RuntimeException ex) {
+            throw new IllegalArgumentException("Invalid cursor");
         }
+        Long lastId = cursor.getId();
+        boolean descending = cursor.isDescending();
 
-        List<Transaction> transactions = transactionRepository.findAll(spec, pageable).getContent();
-        return transactions.stream().map(this::convertToDTO).toList();
+        return (root, query, cb) -> {
+            Expression<Long> id = root.get("id");
+            Predicate idAfter = descending ? cb.lessThan(id, lastId) : cb.greaterThan(id, lastId);
+            if (cursor.getSortBy().equals("id")) {
+                return idAfter;
+            }
+            Expression<Comparable> path = root.get(cursor.getSortBy());
+            Predicate valueAfter = descending ? cb.lessThan(path, value) : cb.greaterThan(path, value);
+            return cb.or(valueAfter, cb.and(cb.equal(path, value), idAfter));
+        };
     }
 
+    private record KeysetField(Function<TransactionRow, Object> getter, Function<String, Comparable<?>> parser) {}
+
+    // seek position of the first statement page: after every storable timestamp
+    private static final LocalDateTime ACCOUNT_FIRST_PAGE_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+
+    // sortBy value ordering search results by ts_rank; offset paging only
+    private static final String RELEVANCE = "relevance";
+
+    private static final Map<String, KeysetField> KEYSET_SORT_FIELDS = Map.of(
+            "id", new KeysetField(TransactionRow::id, Long::valueOf),
+            "timestamp", new KeysetField(TransactionRow::timestamp, LocalDateTime::parse),
+            "amount", new KeysetField(TransactionRow::amount, Long::valueOf),
+            "currency", new KeysetField(TransactionRow::currency, v -> v),
+            "senderAccount", new KeysetField(TransactionRow::senderAccount, v -> v),
+            "receiverAccount", new KeysetField(TransactionRow::receiverAccount, v -> v)
+    );
+
     // Read by ID
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = TRANSACTIONS_CACHE, key = "#id")
     public TransactionDTO getTransactionById(Long id) {
         Transaction transaction = transactionRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Transaction with id " + id + " not found"));
@@ -96,29 +429,59 @@ public class TransactionService {
 
 
     // Update
-    public TransactionDTO updateTransaction(Long id, TransactionDTO transactionDetails) {
+    @Transactional
+    @CachePut(cacheNames = TRANSACTIONS_CACHE, key = "#id")
+    public TransactionDTO updateTransaction(Long id, TransactionDTO transactionDetails, Set<Long> expectedVersions) {
         Transaction transaction = transactionRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Transaction with id " + id + " not found"));
+        // If-Match: a concurrent update between this check and the flush is caught by @Version
+        if (expectedVersions != null && !expectedVersions.contains(transaction.getVersion())) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Transaction with id " + id + " has been modified");
+        }
+        String oldCurrency = transaction.getCurrency();
+        LocalDateTime oldTimestamp = transaction.getTimestamp();
+        long oldAmount = transaction.getAmount();
+        String oldSender = transaction.getSenderAccount();
+        String oldReceiver = transaction.getReceiverAccount();
 
-        transaction.setAmount(transactionDetails.getAmount());
+        transaction.setAmount(amountOf(transactionDetails));
         transaction.setCurrency(transactionDetails.getCurrency());
         transaction.setDescription(transactionDetails.getDescription());
         transaction.setTimestamp(transactionDetails.getTimestamp());
+        // a new timestamp may move the row to another month's partition, which must not be an archived one
+        partitionService.checkWritable(transaction.getTimestamp());
 
-        Transaction updatedTransaction = transactionRepository.save(transaction);
-        return convertToDTO(updatedTransaction);
+        Transaction updatedTransaction = transactionRepository.saveAndFlush(transaction);
+        statisticsService.recordUpdated(oldCurrency, oldTimestamp, updatedTransaction);
+        balanceService.recordUpdated(oldSender, oldReceiver, oldCurrency, oldAmount, updatedTransaction);
+        TransactionDTO updated = convertToDTO(updatedTransaction);
+        eventService.recordChanges(TransactionEvent.Type.UPDATED, List.of(updated));
+        changeCounter.markChanged();
+        return updated;
     }
 
     // Delete all
+    @Transactional
+    @CacheEvict(cacheNames = TRANSACTIONS_CACHE, allEntries = true)
     public void deleteAllTransactions() {
         transactionRepository.deleteAll();
+        statisticsService.clear();
+        balanceService.clear();
+        eventService.recordCleared();
+        changeCounter.markChanged();
     }
 
     // Delete by ID
+    @Transactional
+    @CacheEvict(cacheNames = TRANSACTIONS_CACHE, key = "#id")
     public void deleteTransactionById(Long id) {
-        if (!transactionRepository.existsById(id)) {
-            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Transaction with id " + id + " not found");
-        }
-        transactionRepository.deleteById(id);
+        Transaction transaction = transactionRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Transaction with id " + id + " not found"));
+        transactionRepository.delete(transaction);
+        transactionRepository.flush();
+        statisticsService.recordRemoved(transaction.getCurrency(), transaction.getTimestamp());
+        balanceService.recordRemoved(transaction);
+        eventService.recordChanges(TransactionEvent.Type.DELETED, List.of(convertToDTO(transaction)));
+        changeCounter.markChanged();
     }
 }
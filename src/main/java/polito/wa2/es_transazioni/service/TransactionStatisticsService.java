@@ -0,0 +1,215 @@
+package polito.wa2.es_transazioni.service;
+
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import polito.wa2.es_transazioni.DTOs.CurrencyStatisticsDTO;
+import polito.wa2.es_transazioni.DTOs.TransactionStatisticsDTO;
+import polito.wa2.es_transazioni.DTOs.VolumeBucketDTO;
+import polito.wa2.es_transazioni.entity.Amounts;
+import polito.wa2.es_transazioni.entity.Transaction;
+import polito.wa2.es_transazioni.entity.TransactionRollupId;
+import polito.wa2.es_transazioni.repository.TransactionRollupRepository;
+import polito.wa2.es_transazioni.repository.TransactionSpecifications;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+@Service
+@Timed("transaction.service")
+public class TransactionStatisticsService {
+
+    private static final Set<String> GRANULARITIES = Set.of("hour", "day");
+    // open ends of the range, both within what a Postgres timestamp can hold
+    private static final LocalDateTime MIN_TIMESTAMP = LocalDateTime.of(1, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_TIMESTAMP = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final TransactionRollupRepository rollupRepository;
+    private final EntityManager entityManager;
+
+    public TransactionStatisticsService(TransactionRollupRepository rollupRepository, EntityManager entityManager) {
+        this.rollupRepository = rollupRepository;
+        this.entityManager = entityManager;
+    }
+
+    // Rollup maintenance, called by TransactionService within its write transactions
+
+    // New rows only grow their buckets, so they are folded in with one upsert per (hour, currency)
+    public void recordCreated(Collection<Transaction> transactions) {
+        Map<TransactionRollupId, Aggregate> groups = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getTimestamp() == null || transaction.getCurrency() == null) {
+                continue;
+            }
+            TransactionRollupId bucket = new TransactionRollupId(bucketOf(transaction.getTimestamp()), transaction.getCurrency());
+            groups.computeIfAbsent(bucket, k -> new Aggregate()).add(transaction.getAmount());
+        }
+        groups.forEach((bucket, aggregate) -> rollupRepository.add(
+                bucket.getBucketStart(), bucket.getCurrency(),
+                aggregate.count, aggregate.total, aggregate.min, aggregate.max));
+    }
+
+    // A row left the bucket of (currency, timestamp): the change must already be flushed
+    public void recordRemoved(String currency, LocalDateTime timestamp) {
+        if (currency == null || timestamp == null) {
+            return;
+        }
+        LocalDateTime bucketStart = bucketOf(timestamp);
+        rollupRepository.deleteBucket(bucketStart, currency);
+        rollupRepository.rebuildBucket(bucketStart, bucketStart.plusHours(1), currency);
+    }
+
+    // A row changed: both the bucket it left and the one it now belongs to are rebuilt
+    public void recordUpdated(String oldCurrency, LocalDateTime oldTimestamp, Transaction updated) {
+        recordRemoved(oldCurrency, oldTimestamp);
+        boolean sameBucket = Objects.equals(oldCurrency, updated.getCurrency())
+                && oldTimestamp != null && updated.getTimestamp() != null
+                && bucketOf(oldTimestamp).equals(bucketOf(updated.getTimestamp()));
+        if (!sameBucket) {
+            recordRemoved(updated.getCurrency(), updated.getTimestamp());
+        }
+    }
+
+    // The transactions of [start, end) were archived (see TransactionPartitionService): statistics only cover the
+    // table, so that the rollups and the GROUP BY over the transactions keep giving the same answer
+    public void recordArchived(LocalDateTime start, LocalDateTime end) {
+        rollupRepository.deleteRange(start, end);
+    }
+
+    public void clear() {
+        rollupRepository.deleteAllInBatch();
+    }
+
+    // Statistics over [startDate, endDate). Without amount filters and with hour-aligned bounds the answer comes
+    // from the rollups; otherwise the same aggregates are computed with GROUP BY over the filtered transactions.
+    @Transactional(readOnly = true)
+    public TransactionStatisticsDTO getStatistics(
+            String currency, BigDecimal minAmount, BigDecimal maxAmount,
+            String startDate, String endDate, String granularity) {
+
+        String unit = granularity.toLowerCase();
+        if (!GRANULARITIES.contains(unit)) {
+            throw new IllegalArgumentException("Granularity must be 'hour' or 'day'");
+        }
+        LocalDateTime start = startDate == null ? null : TransactionSpecifications.parseDateTime(startDate);
+        LocalDateTime end = endDate == null ? null : TransactionSpecifications.parseDateTime(endDate);
+        if (start != null && end != null && !start.isBefore(end)) {
+            throw new IllegalArgumentException("startDate must be before endDate");
+        }
+
+        if (minAmount == null && maxAmount == null && isHourAligned(start) && isHourAligned(end)) {
+            return fromRollups(currency, start == null ? MIN_TIMESTAMP : start, end == null ? MAX_TIMESTAMP : end, unit);
+        }
+        return fromTransactions(currency, minAmount, maxAmount, startDate, end, unit);
+    }
+
+    private TransactionStatisticsDTO fromRollups(String currency, LocalDateTime start, LocalDateTime end, String unit) {
+        List<CurrencyStatisticsDTO> currencies = rollupRepository.totalsByCurrency(currency, start, end).stream()
+                .map(TransactionStatisticsService::toCurrencyStatistics)
+                .toList();
+        List<VolumeBucketDTO> volume = rollupRepository.volume(unit, currency, start, end).stream()
+                .map(row -> new VolumeBucketDTO(toLocalDateTime(row[0]), (String) row[1], toLong(row[2]), toAmount(toLong(row[3]), (String) row[1])))
+                .toList();
+        return new TransactionStatisticsDTO(TransactionStatisticsDTO.Source.ROLLUP, unit, currencies, volume);
+    }
+
+    private TransactionStatisticsDTO fromTransactions(String currency, BigDecimal minAmount, BigDecimal maxAmount,
+                                                      String startDate, LocalDateTime end, String unit) {
+        Specification<Transaction> spec = TransactionSpecifications.filter(currency, minAmount, maxAmount, startDate, null);
+        if (end != null) {
+            spec = spec.and((root, query, cb) -> cb.lessThan(root.get("timestamp"), end));
+        }
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Object[]> totals = cb.createQuery(Object[].class);
+        Root<Transaction> root = totals.from(Transaction.class);
+        Path<String> currencyPath = root.get("currency");
+        Path<Long> amount = root.get("amount");
+        totals.multiselect(currencyPath, cb.count(root), cb.sum(amount), cb.min(amount), cb.max(amount));
+        where(totals, spec.toPredicate(root, totals, cb));
+        totals.groupBy(currencyPath).orderBy(cb.asc(currencyPath));
+        List<CurrencyStatisticsDTO> currencies = entityManager.createQuery(totals).getResultList().stream()
+                .map(TransactionStatisticsService::toCurrencyStatistics)
+                .toList();
+
+        CriteriaQuery<Object[]> series = cb.createQuery(Object[].class);
+        Root<Transaction> seriesRoot = series.from(Transaction.class);
+        Expression<LocalDateTime> bucket = cb.function(unit + "_bucket", LocalDateTime.class, seriesRoot.get("timestamp"));
+        Path<String> seriesCurrency = seriesRoot.get("currency");
+        Path<Long> seriesAmount = seriesRoot.get("amount");
+        series.multiselect(bucket, seriesCurrency, cb.count(seriesRoot), cb.sum(seriesAmount));
+        where(series, spec.toPredicate(seriesRoot, series, cb));
+        series.groupBy(bucket, seriesCurrency).orderBy(cb.asc(bucket), cb.asc(seriesCurrency));
+        List<VolumeBucketDTO> volume = entityManager.createQuery(series).getResultList().stream()
+                .map(row -> new VolumeBucketDTO(toLocalDateTime(row[0]), (String) row[1], toLong(row[2]), toAmount(toLong(row[3]), (String) row[1])))
+                .toList();
+
+        return new TransactionStatisticsDTO(TransactionStatisticsDTO.Source.TRANSACTIONS, unit, currencies, volume);
+    }
+
+    private static void where(CriteriaQuery<?> query, Predicate predicate) {
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+
+    static LocalDateTime bucketOf(LocalDateTime timestamp) {
+        return timestamp.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    private static boolean isHourAligned(LocalDateTime value) {
+        return value == null || value.equals(bucketOf(value));
+    }
+
+    private static long toLong(Object value) {
+        return value == null ? 0 : Amounts.toUnits((Number) value);
+    }
+
+    // [currency, count, total, min, max]; sums stay in fixed-point longs and become decimals once per row
+    private static CurrencyStatisticsDTO toCurrencyStatistics(Object[] row) {
+        String currency = (String) row[0];
+        return new CurrencyStatisticsDTO(currency, toLong(row[1]), toAmount(toLong(row[2]), currency),
+                row[3] == null ? null : toAmount(toLong(row[3]), currency),
+                row[4] == null ? null : toAmount(toLong(row[4]), currency));
+    }
+
+    private static BigDecimal toAmount(long units, String currency) {
+        return Amounts.toDecimal(units, currency);
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof java.sql.Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    private static final class Aggregate {
+        long count;
+        long total;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+
+        void add(long amount) {
+            count++;
+            total += amount;
+            min = Math.min(min, amount);
+            max = Math.max(max, amount);
+        }
+    }
+}
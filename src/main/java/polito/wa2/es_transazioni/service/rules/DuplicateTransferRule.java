@@ -0,0 +1,62 @@
+package polito.wa2.es_transazioni.service.rules;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+// Rejects a transfer with the same sender, receiver, currency and amount as one accepted within the interval.
+// Runs first, so a duplicate is not counted by the velocity rule.
+@Component
+@Order(1)
+@ConditionalOnProperty(name = "app.rules.enabled", havingValue = "true")
+public class DuplicateTransferRule implements TransactionRule {
+
+    // transfer -> when it was accepted. The interval is measured on the time passed to apply; the cache
+    // only bounds memory, dropping the least recent entries and those idle for longer than the interval
+    private final Cache<Transfer, Long> recent;
+    private final Duration interval;
+    private final long intervalMillis;
+
+    public DuplicateTransferRule(@Value("${app.rules.duplicate.interval:PT1M}") Duration interval,
+                                 @Value("${app.rules.max-accounts:1000000}") long maxEntries) {
+        this.interval = interval;
+        this.intervalMillis = interval.toMillis();
+        this.recent = Caffeine.newBuilder()
+                .expireAfterAccess(interval)
+                .maximumSize(maxEntries)
+                .build();
+    }
+
+    @Override
+    public String name() {
+        return "duplicate-transfer";
+    }
+
+    @Override
+    public String apply(Transfer transfer, long nowMillis) {
+        boolean[] duplicate = {false};
+        // atomic per key, so two concurrent copies cannot both pass
+        recent.asMap().compute(transfer, (key, accepted) -> {
+            if (accepted != null && nowMillis - accepted < intervalMillis) {
+                duplicate[0] = true;
+                return accepted;
+            }
+            return nowMillis;
+        });
+        if (duplicate[0]) {
+            return "The same transfer from " + transfer.senderAccount() + " to " + transfer.receiverAccount()
+                    + " was already made within " + interval;
+        }
+        return null;
+    }
+
+    @Override
+    public void revert(Transfer transfer, long nowMillis) {
+        recent.asMap().remove(transfer, nowMillis);
+    }
+}
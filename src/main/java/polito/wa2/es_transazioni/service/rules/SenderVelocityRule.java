@@ -0,0 +1,90 @@
+package polito.wa2.es_transazioni.service.rules;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import polito.wa2.es_transazioni.entity.Amounts;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+
+// At most max-count transfers and max-amount in total from a sender in one currency over the sliding window.
+// One SlidingWindow per (sender, currency); windows idle for longer than the window hold nothing and expire.
+@Component
+@Order(2)
+@ConditionalOnProperty(name = "app.rules.enabled", havingValue = "true")
+public class SenderVelocityRule implements TransactionRule {
+
+    private final Cache<String, SlidingWindow> windows;
+    private final Duration window;
+    private final int buckets;
+    private final long bucketMillis;
+    private final int maxCount;
+    private final long maxAmount;
+
+    public SenderVelocityRule(@Value("${app.rules.velocity.window:PT1H}") Duration window,
+                              @Value("${app.rules.velocity.buckets:60}") int buckets,
+                              @Value("${app.rules.velocity.max-count:100}") int maxCount,
+                              @Value("${app.rules.velocity.max-amount:100000}") BigDecimal maxAmount,
+                              @Value("${app.rules.max-accounts:1000000}") long maxAccounts) {
+        if (buckets <= 0 || window.toMillis() < buckets) {
+            throw new IllegalArgumentException("app.rules.velocity.window must be at least buckets milliseconds");
+        }
+        this.window = window;
+        this.buckets = buckets;
+        this.bucketMillis = window.toMillis() / buckets;
+        this.maxCount = maxCount;
+        this.maxAmount = Amounts.toUnits(maxAmount, RoundingMode.DOWN);
+        this.windows = Caffeine.newBuilder()
+                .expireAfterAccess(window)
+                .maximumSize(maxAccounts)
+                .build();
+    }
+
+    @Override
+    public String name() {
+        return "sender-velocity";
+    }
+
+    @Override
+    public String apply(Transfer transfer, long nowMillis) {
+        SlidingWindow senderWindow = windows.get(key(transfer), k -> new SlidingWindow(buckets, bucketMillis));
+        senderWindow.lock.lock();
+        try {
+            if (senderWindow.count(nowMillis) >= maxCount) {
+                return "Sender " + transfer.senderAccount() + " made more than " + maxCount
+                        + " transfers in " + transfer.currency() + " within " + window;
+            }
+            if (senderWindow.total(nowMillis) + transfer.amount() > maxAmount) {
+                return "Sender " + transfer.senderAccount() + " would exceed "
+                        + Amounts.toDecimal(maxAmount, transfer.currency()) + " " + transfer.currency() + " within " + window;
+            }
+            senderWindow.add(nowMillis, transfer.amount());
+            return null;
+        } finally {
+            senderWindow.lock.unlock();
+        }
+    }
+
+    @Override
+    public void revert(Transfer transfer, long nowMillis) {
+        SlidingWindow senderWindow = windows.getIfPresent(key(transfer));
+        if (senderWindow == null) {
+            return;
+        }
+        senderWindow.lock.lock();
+        try {
+            senderWindow.remove(nowMillis, transfer.amount());
+        } finally {
+            senderWindow.lock.unlock();
+        }
+    }
+
+    private static String key(Transfer transfer) {
+        return transfer.senderAccount() + '/' + transfer.currency();
+    }
+}
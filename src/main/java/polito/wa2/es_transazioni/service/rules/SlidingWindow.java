@@ -0,0 +1,70 @@
+package polito.wa2.es_transazioni.service.rules;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Count and sum of the amounts seen over the last buckets * bucketMillis, as a ring of time buckets in
+// primitive arrays: a bucket is reused, and so evicted, when the ring comes round to it again. The window
+// slides one bucket at a time. Not thread-safe by itself, callers hold lock.
+final class SlidingWindow {
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    private final long bucketMillis;
+    // bucket number (time / bucketMillis) held by each slot, -1 when unused
+    private final long[] buckets;
+    private final int[] counts;
+    private final long[] amounts;
+
+    SlidingWindow(int size, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.buckets = new long[size];
+        this.counts = new int[size];
+        this.amounts = new long[size];
+        Arrays.fill(buckets, -1);
+    }
+
+    void add(long nowMillis, long amount) {
+        long bucket = nowMillis / bucketMillis;
+        int slot = (int) (bucket % buckets.length);
+        if (buckets[slot] != bucket) {
+            buckets[slot] = bucket;
+            counts[slot] = 0;
+            amounts[slot] = 0;
+        }
+        counts[slot]++;
+        amounts[slot] += amount;
+    }
+
+    // Undoes add(nowMillis, amount), unless its bucket has left the window already
+    void remove(long nowMillis, long amount) {
+        long bucket = nowMillis / bucketMillis;
+        int slot = (int) (bucket % buckets.length);
+        if (buckets[slot] == bucket) {
+            counts[slot]--;
+            amounts[slot] -= amount;
+        }
+    }
+
+    int count(long nowMillis) {
+        long oldest = nowMillis / bucketMillis - buckets.length;
+        int count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > oldest) {
+                count += counts[i];
+            }
+        }
+        return count;
+    }
+
+    long total(long nowMillis) {
+        long oldest = nowMillis / bucketMillis - buckets.length;
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i] > oldest) {
+                total += amounts[i];
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,16 @@
+package polito.wa2.es_transazioni.service.rules;
+
+// A TransactionRule refused the transaction; nothing was written
+public class TransactionRejectedException extends RuntimeException {
+
+    private final String rule;
+
+    public TransactionRejectedException(String rule, String message) {
+        super(message);
+        this.rule = rule;
+    }
+
+    public String getRule() {
+        return rule;
+    }
+}
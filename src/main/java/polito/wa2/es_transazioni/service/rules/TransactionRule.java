@@ -0,0 +1,16 @@
+package polito.wa2.es_transazioni.service.rules;
+
+// A check run by TransactionRuleEngine on every transaction before it is created. Rules keep their own
+// in-memory state and must answer without touching the database. Beans are run in @Order.
+public interface TransactionRule {
+
+    // Short identifier, returned to the client with a rejection
+    String name();
+
+    // Checks the transfer made at nowMillis and, if it passes, counts it; returns why it is rejected, or null.
+    // Check and count must be atomic with respect to concurrent calls for the same account.
+    String apply(Transfer transfer, long nowMillis);
+
+    // Takes back a transfer counted by apply at nowMillis: a later rule rejected it or its write rolled back
+    void revert(Transfer transfer, long nowMillis);
+}
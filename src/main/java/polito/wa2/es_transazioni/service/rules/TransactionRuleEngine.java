@@ -0,0 +1,81 @@
+package polito.wa2.es_transazioni.service.rules;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import polito.wa2.es_transazioni.entity.Transaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs the TransactionRule beans (none unless app.rules.enabled=true) on the create path. Everything is
+// in memory, per instance: with several instances behind a balancer each one enforces the limits on its
+// own share of the traffic.
+@Service
+public class TransactionRuleEngine {
+
+    private final List<TransactionRule> rules;
+
+    // in @Order; empty when no rule is enabled
+    public TransactionRuleEngine(List<TransactionRule> rules) {
+        this.rules = rules;
+    }
+
+    // Called by TransactionService before it writes a new transaction. Throws TransactionRejectedException,
+    // with nothing counted, when a rule rejects it; if the surrounding transaction rolls back, the counts
+    // taken here are reverted.
+    public void check(Transaction transaction) {
+        if (rules.isEmpty()) {
+            return;
+        }
+        Transfer transfer = Transfer.of(transaction);
+        long now = System.currentTimeMillis();
+        check(transfer, now);
+        revertOnRollback(transfer, now);
+    }
+
+    // package-private for the tests and the JMH benchmark
+    void check(Transfer transfer, long nowMillis) {
+        for (int i = 0; i < rules.size(); i++) {
+            String reason = rules.get(i).apply(transfer, nowMillis);
+            if (reason != null) {
+                for (int j = i - 1; j >= 0; j--) {
+                    rules.get(j).revert(transfer, nowMillis);
+                }
+                throw new TransactionRejectedException(rules.get(i).name(), reason);
+            }
+        }
+    }
+
+    void revert(Transfer transfer, long nowMillis) {
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            rules.get(i).revert(transfer, nowMillis);
+        }
+    }
+
+    // One synchronization per transaction, with the transfers it counted
+    private void revertOnRollback(Transfer transfer, long nowMillis) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<Counted> counted = (List<Counted>) TransactionSynchronizationManager.getResource(this);
+        if (counted == null) {
+            List<Counted> transfers = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, transfers);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(TransactionRuleEngine.this);
+                    if (status == STATUS_ROLLED_BACK) {
+                        transfers.forEach(c -> revert(c.transfer(), c.nowMillis()));
+                    }
+                }
+            });
+            counted = transfers;
+        }
+        counted.add(new Counted(transfer, nowMillis));
+    }
+
+    private record Counted(Transfer transfer, long nowMillis) {}
+}
@@ -0,0 +1,13 @@
+package polito.wa2.es_transazioni.service.rules;
+
+import polito.wa2.es_transazioni.entity.Transaction;
+
+// What the rules look at in a transaction about to be created; amount is fixed-point, see Amounts.
+// Also the key of DuplicateTransferRule, hence a record.
+public record Transfer(String senderAccount, String receiverAccount, String currency, long amount) {
+
+    public static Transfer of(Transaction transaction) {
+        return new Transfer(transaction.getSenderAccount(), transaction.getReceiverAccount(),
+                transaction.getCurrency(), transaction.getAmount());
+    }
+}
@@ -0,0 +1,127 @@
+-- Monthly range partitions on timestamp. Date-range queries only touch the months they cover, and old
+-- months can be detached and archived as a whole (see TransactionPartitionService) instead of deleted
+-- row by row. The primary key must contain the partition key, so it becomes (id, timestamp) and
+-- timestamp becomes NOT NULL; the API has always required it, rows without one get their last_modified.
+-- There is no default partition: it would stop ordered appends over the partitions, so the service
+-- creates the partition of a month before writing to it.
+
+-- Creates and attaches the partition of the month starting at month_start, unless it exists. Partition
+-- indexes are created with the parent index name plus the partition suffix, so plans stay readable.
+-- Safe to call concurrently; the caller's transaction holds the lock until it commits.
+CREATE FUNCTION create_transactions_partition(month_start DATE) RETURNS TEXT
+LANGUAGE plpgsql AS $$
+DECLARE
+    suffix         TEXT := to_char(month_start, '"y"YYYY"m"MM');
+    partition_name TEXT := 'transactions_' || suffix;
+BEGIN
+    IF month_start <> date_trunc('month', month_start)::DATE THEN
+        RAISE EXCEPTION 'month_start must be the first day of a month: %', month_start;
+    END IF;
+    PERFORM pg_advisory_xact_lock(hashtext('transactions_partitions'));
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = partition_name AND relispartition) THEN
+        RETURN partition_name;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+    EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (id, timestamp)', partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (timestamp, id)',
+                   'idx_transactions_timestamp_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (currency, timestamp, id)',
+                   'idx_transactions_currency_timestamp_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (amount, id)',
+                   'idx_transactions_amount_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (sender_account, timestamp, id)',
+                   'idx_transactions_sender_account_timestamp_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (receiver_account, timestamp, id)',
+                   'idx_transactions_receiver_account_timestamp_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I USING GIN (to_tsvector(''simple'', description))',
+                   'idx_transactions_description_fts_' || suffix, partition_name);
+    -- the indexes above match the parent's, so ATTACH adopts them instead of building new ones
+    EXECUTE format('ALTER TABLE transactions ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, month_start, (month_start + INTERVAL '1 month')::DATE);
+    RETURN partition_name;
+END
+$$;
+
+-- Detaches the partition of the month starting at month_start and renames it to
+-- transactions_archiving_<suffix>_<oid>, ready to be archived and dropped. Its indexes are dropped
+-- first, both because the archive reads it sequentially and so that the month can get a new partition
+-- with the same index names. Returns the new name, or NULL when the month has no partition.
+CREATE FUNCTION detach_transactions_partition(month_start DATE) RETURNS TEXT
+LANGUAGE plpgsql AS $$
+DECLARE
+    partition_name TEXT := 'transactions_' || to_char(month_start, '"y"YYYY"m"MM');
+    detached       TEXT;
+    pkey           TEXT;
+    index_name     REGCLASS;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('transactions_partitions'));
+    IF NOT EXISTS (SELECT 1 FROM pg_class WHERE relname = partition_name AND relispartition) THEN
+        RETURN NULL;
+    END IF;
+    detached := 'transactions_archiving_' || substr(partition_name, 14) || '_' || partition_name::REGCLASS::OID;
+
+    EXECUTE format('ALTER TABLE transactions DETACH PARTITION %I', partition_name);
+    SELECT conname INTO pkey FROM pg_constraint WHERE conrelid = partition_name::REGCLASS AND contype = 'p';
+    IF pkey IS NOT NULL THEN
+        EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', partition_name, pkey);
+    END IF;
+    FOR index_name IN SELECT indexrelid::REGCLASS FROM pg_index WHERE indrelid = partition_name::REGCLASS LOOP
+        EXECUTE format('DROP INDEX %s', index_name);
+    END LOOP;
+    EXECUTE format('ALTER TABLE %I RENAME TO %I', partition_name, detached);
+    RETURN detached;
+END
+$$;
+
+-- The old table goes away at the end; its constraint and index names are needed by the new one
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+ALTER TABLE transactions_unpartitioned DROP CONSTRAINT IF EXISTS transactions_pkey;
+DROP INDEX IF EXISTS idx_transactions_timestamp_id;
+DROP INDEX IF EXISTS idx_transactions_currency_timestamp_id;
+DROP INDEX IF EXISTS idx_transactions_amount_id;
+DROP INDEX IF EXISTS idx_transactions_sender_account_timestamp_id;
+DROP INDEX IF EXISTS idx_transactions_receiver_account_timestamp_id;
+DROP INDEX IF EXISTS idx_transactions_description_fts;
+
+CREATE TABLE transactions (
+    id               BIGINT       NOT NULL,
+    amount           BIGINT       NOT NULL,
+    currency         VARCHAR(255),
+    description      VARCHAR(500),
+    timestamp        TIMESTAMP(6) NOT NULL,
+    sender_account   VARCHAR(255),
+    receiver_account VARCHAR(255),
+    version          BIGINT       NOT NULL DEFAULT 0,
+    last_modified    TIMESTAMP(6) NOT NULL DEFAULT (now() AT TIME ZONE 'UTC'),
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE INDEX idx_transactions_timestamp_id ON transactions (timestamp, id);
+CREATE INDEX idx_transactions_currency_timestamp_id ON transactions (currency, timestamp, id);
+CREATE INDEX idx_transactions_amount_id ON transactions (amount, id);
+CREATE INDEX idx_transactions_sender_account_timestamp_id ON transactions (sender_account, timestamp, id);
+CREATE INDEX idx_transactions_receiver_account_timestamp_id ON transactions (receiver_account, timestamp, id);
+CREATE INDEX idx_transactions_description_fts ON transactions USING GIN (to_tsvector('simple', description));
+
+-- Every month that has rows, plus the current one and the next three
+SELECT create_transactions_partition(month::DATE)
+FROM (
+    SELECT DISTINCT date_trunc('month', COALESCE(timestamp, last_modified)) AS month
+    FROM transactions_unpartitioned
+    UNION
+    SELECT generate_series(date_trunc('month', LOCALTIMESTAMP),
+                           date_trunc('month', LOCALTIMESTAMP) + INTERVAL '3 months',
+                           INTERVAL '1 month')
+) months
+ORDER BY month;
+
+INSERT INTO transactions (id, amount, currency, description, timestamp, sender_account, receiver_account,
+                          version, last_modified)
+SELECT id, amount, currency, description, COALESCE(timestamp, last_modified), sender_account, receiver_account,
+       version, last_modified
+FROM transactions_unpartitioned;
+
+DROP TABLE transactions_unpartitioned;
+
+ANALYZE transactions;
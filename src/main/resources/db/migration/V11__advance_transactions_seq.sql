@@ -0,0 +1,9 @@
+-- transactions_seq must be past every existing id: Hibernate's pooled optimizer hands out the block
+-- below each nextval, so a sequence behind max(id) makes the first inserts collide with existing keys.
+-- V1 only did this when it created the schema; databases that ran the ddl-auto schema with the pooled
+-- sequence in between may still be behind. Never moves the sequence backwards, as running instances
+-- may hold blocks above max(id).
+SELECT setval('transactions_seq', GREATEST(
+    (SELECT last_value FROM transactions_seq),
+    (SELECT COALESCE(MAX(id), 0) + 1 FROM transactions)
+));
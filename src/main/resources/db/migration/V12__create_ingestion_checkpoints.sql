@@ -0,0 +1,9 @@
+-- Checkpoint of every local ingestion log (see AsyncIngestionService): the last log sequence number
+-- written to transactions. It is updated in the same transaction as the rows it covers, so replaying
+-- a log after a crash never inserts an entry twice.
+
+CREATE TABLE ingestion_checkpoints (
+    log_id     VARCHAR(64)  NOT NULL PRIMARY KEY,
+    seq        BIGINT       NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL
+);
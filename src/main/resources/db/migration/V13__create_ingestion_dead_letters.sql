@@ -0,0 +1,13 @@
+-- Entries of the ingestion logs that the database refuses for good (constraint violation, bad value...).
+-- AsyncIngestionService moves them here, in the same transaction as the checkpoint that skips them, so
+-- they stop blocking the queue; the payload is the TransactionDTO as JSON, to fix and resubmit by hand.
+
+CREATE TABLE ingestion_dead_letters (
+    log_id      VARCHAR(64)  NOT NULL,
+    seq         BIGINT       NOT NULL,
+    tracking_id VARCHAR(64)  NOT NULL,
+    payload     TEXT         NOT NULL,
+    error       TEXT         NOT NULL,
+    failed_at   TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (log_id, seq)
+);
@@ -0,0 +1,4 @@
+-- Balances are read as the snapshot plus the deltas not folded yet (see AccountBalanceService), so the
+-- deltas of one account are looked up on every read. The table only holds about one snapshot interval of
+-- writes, so a plain CREATE INDEX is short.
+CREATE INDEX idx_account_balance_deltas_account ON account_balance_deltas (account);
@@ -0,0 +1,11 @@
+-- The relay used to number pending events in id order, but ids come from a pooled sequence (each instance
+-- hands out its own block of 50), so an update could be published before the create of the same row.
+-- Each event now records the id of the transaction that wrote it, and the relay only takes events of
+-- transactions older than every one still running (pg_snapshot_xmin), in (xid, id) order: nothing can
+-- commit before them any more, a row's later change always comes from a later transaction, and a retried
+-- batch is numbered exactly like the failed one. Needs Postgres 13+.
+
+ALTER TABLE transaction_events ADD COLUMN xid xid8 NOT NULL DEFAULT pg_current_xact_id();
+
+DROP INDEX idx_transaction_events_unpublished;
+CREATE INDEX idx_transaction_events_unpublished ON transaction_events (xid, id) WHERE published_seq IS NULL;
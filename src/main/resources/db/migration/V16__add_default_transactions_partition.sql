@@ -0,0 +1,50 @@
+-- Partitions are no longer created by the requests that need them: that took a second pooled connection
+-- per write (a REQUIRES_NEW transaction) and ran DDL on the request path. The maintenance run creates
+-- the months ahead of the writes; a row whose month has no partition yet (a late or backdated one) lands
+-- in this default partition, and the next maintenance run moves it into a partition of its own, so the
+-- default partition stays close to empty. While it holds rows, listings without a date range merge the
+-- partitions instead of appending them in order.
+CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+
+-- Same as in V10, except that the rows of the month already in the default partition are moved into the
+-- new partition before it is attached: attaching would fail on them otherwise. The default partition is
+-- locked first, so no row for the month can reach it in between.
+CREATE OR REPLACE FUNCTION create_transactions_partition(month_start DATE) RETURNS TEXT
+LANGUAGE plpgsql AS $$
+DECLARE
+    suffix         TEXT := to_char(month_start, '"y"YYYY"m"MM');
+    partition_name TEXT := 'transactions_' || suffix;
+    month_end      DATE := (month_start + INTERVAL '1 month')::DATE;
+BEGIN
+    IF month_start <> date_trunc('month', month_start)::DATE THEN
+        RAISE EXCEPTION 'month_start must be the first day of a month: %', month_start;
+    END IF;
+    PERFORM pg_advisory_xact_lock(hashtext('transactions_partitions'));
+    IF EXISTS (SELECT 1 FROM pg_class WHERE relname = partition_name AND relispartition) THEN
+        RETURN partition_name;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE transactions INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+    LOCK TABLE transactions_default IN ACCESS EXCLUSIVE MODE;
+    EXECUTE format('INSERT INTO %I SELECT * FROM transactions_default WHERE timestamp >= %L AND timestamp < %L',
+                   partition_name, month_start, month_end);
+    DELETE FROM transactions_default WHERE timestamp >= month_start AND timestamp < month_end;
+
+    EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (id, timestamp)', partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (timestamp, id)',
+                   'idx_transactions_timestamp_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (currency, timestamp, id)',
+                   'idx_transactions_currency_timestamp_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (amount, id)',
+                   'idx_transactions_amount_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (sender_account, timestamp, id)',
+                   'idx_transactions_sender_account_timestamp_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (receiver_account, timestamp, id)',
+                   'idx_transactions_receiver_account_timestamp_id_' || suffix, partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I USING GIN (to_tsvector(''simple'', description))',
+                   'idx_transactions_description_fts_' || suffix, partition_name);
+    EXECUTE format('ALTER TABLE transactions ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, month_start, month_end);
+    RETURN partition_name;
+END
+$$;
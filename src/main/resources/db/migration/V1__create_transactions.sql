@@ -0,0 +1,19 @@
+-- Baseline schema. It matches what ddl-auto=update used to generate, so databases
+-- created before migrations existed can adopt it (see spring.flyway.baseline-*).
+
+CREATE SEQUENCE IF NOT EXISTS transactions_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS transactions (
+    id               BIGINT       NOT NULL PRIMARY KEY,
+    amount           DOUBLE PRECISION,
+    currency         VARCHAR(255),
+    description      VARCHAR(500),
+    timestamp        TIMESTAMP(6),
+    sender_account   VARCHAR(255),
+    receiver_account VARCHAR(255)
+);
+
+-- Older tables were created with an IDENTITY id; ids now come from transactions_seq
+ALTER TABLE transactions ALTER COLUMN id DROP IDENTITY IF EXISTS;
+
+SELECT setval('transactions_seq', MAX(id) + 50) FROM transactions HAVING MAX(id) IS NOT NULL;
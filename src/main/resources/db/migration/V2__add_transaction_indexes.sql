@@ -0,0 +1,21 @@
+-- Indexes for the query shapes of TransactionService. Built CONCURRENTLY so that
+-- existing tables keep accepting writes; Flyway runs this script outside a transaction.
+
+-- Default listing (ORDER BY timestamp, id), keyset paging and date ranges
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_timestamp_id
+    ON transactions (timestamp, id);
+
+-- Currency filter, usually combined with a date range and a sort on timestamp
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_currency_timestamp_id
+    ON transactions (currency, timestamp, id);
+
+-- Amount ranges and keyset paging by amount
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_amount_id
+    ON transactions (amount, id);
+
+-- Account statements, newest first
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_sender_account_timestamp_id
+    ON transactions (sender_account, timestamp, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_receiver_account_timestamp_id
+    ON transactions (receiver_account, timestamp, id);
@@ -0,0 +1,18 @@
+-- Hourly per-currency aggregates, maintained by TransactionStatisticsService on every write,
+-- so statistics over long ranges read a few rollup rows instead of the transactions themselves
+
+CREATE TABLE transaction_rollups (
+    bucket_start TIMESTAMP(6)     NOT NULL,
+    currency     VARCHAR(255)     NOT NULL,
+    tx_count     BIGINT           NOT NULL,
+    total_amount DOUBLE PRECISION NOT NULL,
+    min_amount   DOUBLE PRECISION NOT NULL,
+    max_amount   DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (bucket_start, currency)
+);
+
+INSERT INTO transaction_rollups (bucket_start, currency, tx_count, total_amount, min_amount, max_amount)
+SELECT date_trunc('hour', timestamp), currency, COUNT(*), SUM(amount), MIN(amount), MAX(amount)
+FROM transactions
+WHERE timestamp IS NOT NULL AND currency IS NOT NULL AND amount IS NOT NULL
+GROUP BY 1, 2;
@@ -0,0 +1,13 @@
+-- Idempotency-Key store: the primary key is the deduplication index, so concurrent requests
+-- with the same key serialize on that index entry only; rows are purged once expired
+
+CREATE TABLE idempotency_keys (
+    idempotency_key VARCHAR(255) NOT NULL PRIMARY KEY,
+    scope           VARCHAR(32)  NOT NULL,
+    request_hash    VARCHAR(64)  NOT NULL,
+    response_body   TEXT,
+    created_at      TIMESTAMP(6) NOT NULL,
+    expires_at      TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys (expires_at);
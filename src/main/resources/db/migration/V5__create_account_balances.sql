@@ -0,0 +1,31 @@
+-- Running balance of every (account, currency): received minus sent amounts.
+-- Writes append their changes to account_balance_deltas in the same transaction; the
+-- periodic snapshot of AccountBalanceService folds them into account_balances, so a
+-- restart only has to add up the deltas written since the last snapshot.
+
+CREATE TABLE account_balances (
+    account  VARCHAR(255)     NOT NULL,
+    currency VARCHAR(255)     NOT NULL,
+    balance  DOUBLE PRECISION NOT NULL,
+    PRIMARY KEY (account, currency)
+);
+
+CREATE TABLE account_balance_deltas (
+    id       BIGSERIAL        PRIMARY KEY,
+    account  VARCHAR(255)     NOT NULL,
+    currency VARCHAR(255)     NOT NULL,
+    delta    DOUBLE PRECISION NOT NULL
+);
+
+INSERT INTO account_balances (account, currency, balance)
+SELECT account, currency, SUM(delta)
+FROM (
+    SELECT sender_account AS account, currency, -amount AS delta
+    FROM transactions
+    WHERE sender_account IS NOT NULL AND currency IS NOT NULL AND amount IS NOT NULL
+    UNION ALL
+    SELECT receiver_account, currency, amount
+    FROM transactions
+    WHERE receiver_account IS NOT NULL AND currency IS NOT NULL AND amount IS NOT NULL
+) movements
+GROUP BY account, currency;
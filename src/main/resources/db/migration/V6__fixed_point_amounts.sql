@@ -0,0 +1,39 @@
+-- Amounts become exact fixed-point BIGINTs in ten-thousandths of the currency unit (see Amounts).
+-- The double values are converted through numeric, which keeps their shortest decimal form
+-- (0.29 stays 0.29), and the derived tables are rebuilt from the converted amounts instead of
+-- carrying over sums that already accumulated rounding drift.
+
+ALTER TABLE transactions
+    ALTER COLUMN amount TYPE BIGINT USING round(amount::numeric * 10000)::bigint,
+    ALTER COLUMN amount SET NOT NULL;
+
+TRUNCATE transaction_rollups;
+
+ALTER TABLE transaction_rollups
+    ALTER COLUMN total_amount TYPE BIGINT,
+    ALTER COLUMN min_amount TYPE BIGINT,
+    ALTER COLUMN max_amount TYPE BIGINT;
+
+INSERT INTO transaction_rollups (bucket_start, currency, tx_count, total_amount, min_amount, max_amount)
+SELECT date_trunc('hour', timestamp), currency, COUNT(*), SUM(amount), MIN(amount), MAX(amount)
+FROM transactions
+WHERE timestamp IS NOT NULL AND currency IS NOT NULL
+GROUP BY 1, 2;
+
+TRUNCATE account_balances, account_balance_deltas;
+
+ALTER TABLE account_balances ALTER COLUMN balance TYPE BIGINT;
+ALTER TABLE account_balance_deltas ALTER COLUMN delta TYPE BIGINT;
+
+INSERT INTO account_balances (account, currency, balance)
+SELECT account, currency, SUM(delta)
+FROM (
+    SELECT sender_account AS account, currency, -amount AS delta
+    FROM transactions
+    WHERE sender_account IS NOT NULL AND currency IS NOT NULL
+    UNION ALL
+    SELECT receiver_account, currency, amount
+    FROM transactions
+    WHERE receiver_account IS NOT NULL AND currency IS NOT NULL
+) movements
+GROUP BY account, currency;
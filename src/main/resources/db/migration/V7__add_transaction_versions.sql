@@ -0,0 +1,8 @@
+-- Optimistic locking and HTTP validators: version is the JPA @Version of the row and
+-- last_modified (UTC) its Last-Modified; both only change when the row is written.
+ALTER TABLE transactions
+    ADD COLUMN version       BIGINT       NOT NULL DEFAULT 0,
+    ADD COLUMN last_modified TIMESTAMP(6) NOT NULL DEFAULT (now() AT TIME ZONE 'UTC');
+
+-- Bumped after every committed write to transactions; its value is the ETag of the listings
+CREATE SEQUENCE transactions_change_seq;
@@ -0,0 +1,7 @@
+-- Full-text search on descriptions (the q parameter of the listing). An expression index, so Postgres
+-- keeps it up to date on every write without an extra column; queries must use the very same
+-- expression, see fts_match in PostgresFunctionContributor. The 'simple' configuration does no
+-- stemming and keeps every word, which suits references, names and mixed-language text.
+-- Built CONCURRENTLY like V2; Flyway runs this script outside a transaction.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_description_fts
+    ON transactions USING GIN (to_tsvector('simple', description));
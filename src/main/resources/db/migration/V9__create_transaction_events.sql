@@ -0,0 +1,17 @@
+-- Transactional outbox: every write to transactions adds its events here in the same transaction.
+-- The relay then gives them a gap-free published_seq in the order it picks them up; consumers read
+-- and resume by published_seq, never by id (ids come from a pooled sequence and are not commit-ordered).
+
+CREATE SEQUENCE transaction_events_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE transaction_events (
+    id             BIGINT       NOT NULL PRIMARY KEY,
+    published_seq  BIGINT       UNIQUE,
+    event_type     VARCHAR(16)  NOT NULL,
+    transaction_id BIGINT,
+    payload        TEXT,
+    created_at     TIMESTAMP(6) NOT NULL
+);
+
+-- What the relay still has to publish; stays small since rows leave it once published
+CREATE INDEX idx_transaction_events_unpublished ON transaction_events (id) WHERE published_seq IS NULL;
@@ -0,0 +1,163 @@
+package polito.wa2.es_transazioni;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Drives the same mixed read/write workload against the application running on platform
+// threads and on virtual threads, and prints throughput and p50/p99 latency of each mode.
+// Run with ./gradlew loadTest (needs Docker). The rules are off, the workload repeats the same transfer.
+@Tag("load")
+@Testcontainers(disabledWithoutDocker = true)
+abstract class ThreadingModeLoadTests {
+
+    private static final int CONCURRENCY = 400;
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(20);
+
+    // a recent timestamp, so the month is never one the app would archive or refuse
+    private static final String TRANSACTION = """
+            {"amount": 42.50, "currency": "EUR", "description": "Load test",
+             "timestamp": "%s",
+             "senderAccount": "IT60X0542811101000000123456", "receiverAccount": "DE89370400440532013000"}
+            """.formatted(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusMinutes(1));
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @LocalServerPort
+    int port;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    abstract String mode();
+
+    @BeforeEach
+    void seed() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            send(create());
+        }
+    }
+
+    @Test
+    void mixedWorkload() throws Exception {
+        run(WARMUP);
+        Result result = run(MEASUREMENT);
+
+        System.out.printf("[%s] %d requests, %.0f req/s, p50=%.1f ms, p99=%.1f ms, errors=%d%n",
+                mode(), result.latenciesNanos().size(), result.throughput(),
+                result.percentileMillis(0.50), result.percentileMillis(0.99), result.errors());
+        assertThat(result.errors()).isZero();
+    }
+
+    private Result run(Duration duration) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        AtomicInteger errors = new AtomicInteger();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int c = 0; c < CONCURRENCY; c++) {
+                int client = c;
+                workers.add(clients.submit(() -> {
+                    List<Long> local = new ArrayList<>();
+                    for (int i = 0; System.nanoTime() < deadline; i++) {
+                        // one write every ten requests, the rest are filtered listings
+                        HttpRequest request = (client + i) % 10 == 0 ? create() : list();
+                        long begin = System.nanoTime();
+                        try {
+                            if (send(request) >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception ex) {
+                            errors.incrementAndGet();
+                        }
+                        local.add(System.nanoTime() - begin);
+                    }
+                    latencies.addAll(local);
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        return new Result(latencies, errors.get(), System.nanoTime() - start);
+    }
+
+    private HttpRequest create() {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/transactions"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(TRANSACTION))
+                .build();
+    }
+
+    private HttpRequest list() {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/transactions?size=20&currency=EUR"))
+                .GET()
+                .build();
+    }
+
+    private int send(HttpRequest request) throws Exception {
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private record Result(List<Long> latenciesNanos, int errors, long elapsedNanos) {
+
+        double throughput() {
+            return latenciesNanos.size() / (elapsedNanos / 1e9);
+        }
+
+        double percentileMillis(double percentile) {
+            List<Long> sorted = new ArrayList<>(latenciesNanos);
+            Collections.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+            return sorted.get(Math.max(index, 0)) / 1e6;
+        }
+    }
+
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {"spring.threads.virtual.enabled=false", "app.rules.enabled=false",
+                    "app.partitions.archive-after-months=0"})
+    static class PlatformThreads extends ThreadingModeLoadTests {
+        @Override
+        String mode() {
+            return "platform threads";
+        }
+    }
+
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+            properties = {"spring.threads.virtual.enabled=true", "app.rules.enabled=false",
+                    "app.partitions.archive-after-months=0"})
+    static class VirtualThreads extends ThreadingModeLoadTests {
+        @Override
+        String mode() {
+            return "virtual threads";
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package polito.wa2.es_transazioni.controller;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Request bodies and helpers shared by the API tests, which each run the application on their own Postgres
+final class ApiFixtures {
+
+    static final String SENDER = "IT60X0542811101000000123456";
+    static final String RECEIVER = "DE89370400440532013000";
+
+    // bodies are maps of strings, so a plain mapper writes them exactly as a client would; amounts in
+    // responses are read as exact decimals
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    private ApiFixtures() {}
+
+    static Map<String, Object> transaction(String amount, LocalDateTime timestamp) {
+        Map<String, Object> transaction = new LinkedHashMap<>();
+        transaction.put("amount", amount);
+        transaction.put("currency", "EUR");
+        transaction.put("description", "API test");
+        transaction.put("timestamp", timestamp.toString());
+        transaction.put("senderAccount", SENDER);
+        transaction.put("receiverAccount", RECEIVER);
+        return transaction;
+    }
+
+    // a minute ago: valid (@PastOrPresent) and in a month that is never archived
+    static LocalDateTime recent() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).minusMinutes(1);
+    }
+
+    static String json(Object value) throws Exception {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    static JsonNode body(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    // Creates the transaction and returns its id
+    static long create(MockMvc mockMvc, Map<String, Object> transaction) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/transactions")
+                        .contentType(MediaType.APPLICATION_JSON).content(json(transaction)))
+                .andExpect(status().isCreated())
+                .andReturn();
+        return body(result).get("id").asLong();
+    }
+}
@@ -0,0 +1,75 @@
+package polito.wa2.es_transazioni.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.RECEIVER;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.body;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.create;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.json;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.recent;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.transaction;
+
+// The largest accepted amount: its sums fit the rollups and the balances and are read back exactly
+@SpringBootTest(properties = {"app.rules.enabled=false", "app.partitions.archive-after-months=0"})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionAmountLimitApiTests {
+
+    private static final String MAX_AMOUNT = "99999999999.9999";
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void twoMaximumAmountsAddUpExactly() throws Exception {
+        LocalDateTime timestamp = recent();
+        // XAU has no minor unit, so the full storage precision is accepted
+        var first = transaction(MAX_AMOUNT, timestamp);
+        first.put("currency", "XAU");
+        var second = transaction(MAX_AMOUNT, timestamp);
+        second.put("currency", "XAU");
+        create(mockMvc, first);
+        create(mockMvc, second);
+
+        BigDecimal doubled = new BigDecimal(MAX_AMOUNT).multiply(BigDecimal.TWO);
+        var statistics = body(mockMvc.perform(get("/api/transactions/statistics").param("currency", "XAU"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertThat(statistics.get("currencies").get(0).get("count").asLong()).isEqualTo(2);
+        assertThat(statistics.get("currencies").get(0).get("total").decimalValue()).isEqualByComparingTo(doubled);
+
+        var balance = body(mockMvc.perform(get("/api/accounts/" + RECEIVER + "/balance"))
+                .andExpect(status().isOk())
+                .andReturn());
+        assertThat(balance.get("balances").get("XAU").decimalValue()).isEqualByComparingTo(doubled);
+    }
+
+    @Test
+    void amountWithTooManyIntegerDigitsIsRejected() throws Exception {
+        mockMvc.perform(post("/api/transactions").contentType(MediaType.APPLICATION_JSON)
+                        .content(json(transaction("100000000000.00", recent()))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors.amount").exists());
+    }
+}
@@ -0,0 +1,82 @@
+package polito.wa2.es_transazioni.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.json;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.recent;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.transaction;
+
+// POST /api/transactions/batch: per-item results, 201 when every item is created and 207 otherwise,
+// and a bounded NDJSON stream
+@SpringBootTest(properties = {"app.rules.enabled=false", "app.partitions.archive-after-months=0", "app.batch.max-size=3"})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionBatchApiTests {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    private static String ndjson(int lines) throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            body.append(json(transaction((i + 1) + ".00", recent()))).append('\n');
+        }
+        return body.toString();
+    }
+
+    @Test
+    void batchWithRejectedItemsAnswersMultiStatus() throws Exception {
+        Map<String, Object> invalid = transaction("-5.00", recent());
+        mockMvc.perform(post("/api/transactions/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(json(List.of(transaction("5.00", recent()), invalid, transaction("6.00", recent())))))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.created").value(2))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.items[0].id").isNumber())
+                .andExpect(jsonPath("$.items[1].status").value("REJECTED"))
+                .andExpect(jsonPath("$.items[1].errors.amount").exists())
+                .andExpect(jsonPath("$.items[2].status").value("CREATED"));
+    }
+
+    @Test
+    void batchWithoutRejectedItemsAnswersCreated() throws Exception {
+        mockMvc.perform(post("/api/transactions/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(json(List.of(transaction("5.00", recent()), transaction("6.00", recent())))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created").value(2));
+    }
+
+    @Test
+    void ndjsonBatchUpToTheLimitIsCreated() throws Exception {
+        mockMvc.perform(post("/api/transactions/batch").contentType("application/x-ndjson").content(ndjson(3)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created").value(3));
+    }
+
+    @Test
+    void ndjsonBatchOverTheLimitIsRejected() throws Exception {
+        mockMvc.perform(post("/api/transactions/batch").contentType("application/x-ndjson").content(ndjson(4)))
+                .andExpect(status().isBadRequest());
+    }
+}
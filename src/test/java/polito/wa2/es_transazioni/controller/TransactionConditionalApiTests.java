@@ -0,0 +1,127 @@
+package polito.wa2.es_transazioni.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.create;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.json;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.recent;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.transaction;
+
+// ETag / If-None-Match on reads, If-Match on updates, and 409 when a versioned update loses a race
+@SpringBootTest(properties = {"app.rules.enabled=false", "app.partitions.archive-after-months=0"})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionConditionalApiTests {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void unchangedTransactionAnswersNotModified() throws Exception {
+        long id = create(mockMvc, transaction("20.00", recent()));
+        String etag = mockMvc.perform(get("/api/transactions/" + id))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/transactions/" + id).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void unchangedListingAnswersNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/transactions"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/transactions").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void updateWithAStaleIfMatchFailsThePrecondition() throws Exception {
+        Map<String, Object> transaction = transaction("20.00", recent());
+        long id = create(mockMvc, transaction);
+        String etag = mockMvc.perform(get("/api/transactions/" + id))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        transaction.put("description", "first update");
+        String updated = mockMvc.perform(put("/api/transactions/" + id).header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON).content(json(transaction)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(updated).isNotEqualTo(etag);
+
+        transaction.put("description", "lost update");
+        mockMvc.perform(put("/api/transactions/" + id).header(HttpHeaders.IF_MATCH, etag)
+                        .contentType(MediaType.APPLICATION_JSON).content(json(transaction)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void updateRacingAnotherWriterIsAConflict() throws Exception {
+        Map<String, Object> transaction = transaction("20.00", recent());
+        long id = create(mockMvc, transaction);
+        transaction.put("description", "racing update");
+
+        try (Connection connection = DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+             Statement statement = connection.createStatement()) {
+            // another writer bumps the version and holds the row lock until it commits
+            connection.setAutoCommit(false);
+            statement.executeUpdate("UPDATE transactions SET version = version + 1 WHERE id = " + id);
+
+            // the request reads the old version, then its versioned UPDATE waits for the lock
+            CompletableFuture<MvcResult> update = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return mockMvc.perform(put("/api/transactions/" + id)
+                            .contentType(MediaType.APPLICATION_JSON).content(json(transaction))).andReturn();
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!waitingOnALock(statement) && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            connection.commit();
+
+            assertThat(update.get(10, TimeUnit.SECONDS).getResponse().getStatus()).isEqualTo(409);
+        }
+    }
+
+    private static boolean waitingOnALock(Statement statement) throws Exception {
+        try (ResultSet rows = statement.executeQuery("""
+                SELECT count(*) FROM pg_stat_activity
+                WHERE wait_event_type = 'Lock' AND query ILIKE 'update transactions%'
+                """)) {
+            rows.next();
+            return rows.getLong(1) > 0;
+        }
+    }
+}
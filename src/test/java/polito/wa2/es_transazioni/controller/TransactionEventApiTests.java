@@ -0,0 +1,74 @@
+package polito.wa2.es_transazioni.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.body;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.create;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.recent;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.transaction;
+
+// The change events published through the outbox: the long-polling feed and the resumable SSE stream
+@SpringBootTest(properties = {"app.rules.enabled=false", "app.partitions.archive-after-months=0"})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionEventApiTests {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void createdTransactionIsPublishedOnTheEventsAndTheStream() throws Exception {
+        long id = create(mockMvc, transaction("30.00", recent()));
+
+        long sequence = -1;
+        long after = 0;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sequence < 0 && System.nanoTime() < deadline) {
+            JsonNode events = body(mockMvc.perform(get("/api/transactions/events")
+                            .param("after", String.valueOf(after)).param("limit", "1000").param("waitSeconds", "1"))
+                    .andExpect(status().isOk())
+                    .andReturn());
+            for (JsonNode event : events) {
+                after = event.get("sequence").asLong();
+                if (event.get("type").asText().equals("CREATED") && event.get("transactionId").asLong() == id) {
+                    sequence = after;
+                }
+            }
+        }
+        assertThat(sequence).as("sequence of the CREATED event").isPositive();
+
+        // resuming the stream right before it replays the same event
+        MvcResult stream = mockMvc.perform(get("/api/transactions/events/stream")
+                        .header("Last-Event-ID", String.valueOf(sequence - 1)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!stream.getResponse().getContentAsString().contains("id:" + sequence + "\n")
+                && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(stream.getResponse().getContentAsString())
+                .contains("id:" + sequence + "\n")
+                .contains("\"transactionId\":" + id);
+    }
+}
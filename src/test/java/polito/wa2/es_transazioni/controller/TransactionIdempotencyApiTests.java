@@ -0,0 +1,70 @@
+package polito.wa2.es_transazioni.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.body;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.json;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.recent;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.transaction;
+
+// POST /api/transactions with Idempotency-Key: a retry replays the first response, another request under
+// the same key is refused
+@SpringBootTest(properties = {"app.rules.enabled=false", "app.partitions.archive-after-months=0"})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionIdempotencyApiTests {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void retryWithTheSameIdempotencyKeyReplaysTheCreatedTransaction() throws Exception {
+        String key = UUID.randomUUID().toString();
+        String transaction = json(transaction("12.50", recent()));
+
+        MvcResult first = mockMvc.perform(post("/api/transactions").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(transaction))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "false"))
+                .andReturn();
+        MvcResult retry = mockMvc.perform(post("/api/transactions").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(transaction))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andReturn();
+
+        assertThat(body(retry).get("id").asLong()).isEqualTo(body(first).get("id").asLong());
+    }
+
+    @Test
+    void idempotencyKeyReusedForADifferentRequestIsRejected() throws Exception {
+        String key = UUID.randomUUID().toString();
+        mockMvc.perform(post("/api/transactions").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(json(transaction("12.50", recent()))))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/transactions").header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON).content(json(transaction("99.00", recent()))))
+                .andExpect(status().isUnprocessableEntity());
+    }
+}
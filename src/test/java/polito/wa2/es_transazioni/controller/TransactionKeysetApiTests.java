@@ -0,0 +1,100 @@
+package polito.wa2.es_transazioni.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.body;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.create;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.transaction;
+
+// GET /api/transactions?paging=keyset: X-Next-Cursor paging, and cursors that keep their own ordering
+@SpringBootTest(properties = {"app.rules.enabled=false", "app.partitions.archive-after-months=0"})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionKeysetApiTests {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void keysetPagingVisitsEveryRowOnceInOrder() throws Exception {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).minusDays(2);
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            created.add(create(mockMvc, transaction("1" + i + ".00", start.plusMinutes(i))));
+        }
+
+        List<Long> visited = new ArrayList<>();
+        String cursor = null;
+        do {
+            var request = get("/api/transactions").param("paging", "keyset").param("size", "2")
+                    .param("sortBy", "timestamp").param("order", "desc")
+                    .param("startDate", start.toString()).param("endDate", start.plusHours(1).toString());
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            MvcResult page = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+            body(page).forEach(row -> visited.add(row.get("id").asLong()));
+            cursor = page.getResponse().getHeader("X-Next-Cursor");
+        } while (cursor != null);
+
+        assertThat(visited).containsExactlyElementsOf(created.reversed());
+    }
+
+    @Test
+    void cursorKeepsTheOrderingItWasCreatedWith() throws Exception {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).minusDays(3);
+        List<Long> created = new ArrayList<>();
+        // amounts grow with the timestamps, so amount ascending is the reverse of timestamp descending
+        for (int i = 0; i < 4; i++) {
+            created.add(create(mockMvc, transaction((10 + i) + ".00", start.plusMinutes(i))));
+        }
+        String end = start.plusHours(1).toString();
+
+        MvcResult first = mockMvc.perform(get("/api/transactions").param("paging", "keyset").param("size", "2")
+                        .param("sortBy", "timestamp").param("order", "desc")
+                        .param("startDate", start.toString()).param("endDate", end))
+                .andExpect(status().isOk())
+                .andReturn();
+        String cursor = first.getResponse().getHeader("X-Next-Cursor");
+        assertThat(cursor).isNotNull();
+
+        // a different sortBy/order next to the cursor does not change where the next page starts
+        MvcResult second = mockMvc.perform(get("/api/transactions").param("paging", "keyset").param("size", "2")
+                        .param("sortBy", "amount").param("order", "asc")
+                        .param("startDate", start.toString()).param("endDate", end)
+                        .param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andReturn();
+        List<Long> visited = new ArrayList<>();
+        body(first).forEach(row -> visited.add(row.get("id").asLong()));
+        body(second).forEach(row -> visited.add(row.get("id").asLong()));
+        assertThat(visited).containsExactlyElementsOf(created.reversed());
+    }
+
+    @Test
+    void tamperedCursorIsRejected() throws Exception {
+        mockMvc.perform(get("/api/transactions").param("paging", "keyset").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+}
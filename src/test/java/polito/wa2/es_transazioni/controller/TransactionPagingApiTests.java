@@ -0,0 +1,55 @@
+package polito.wa2.es_transazioni.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.test.web.servlet.MockMvc;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static polito.wa2.es_transazioni.controller.ApiFixtures.SENDER;
+
+// page and size bounds of the listings: out-of-range values are a 400, never a 500 or an unbounded read
+@SpringBootTest(properties = {"app.rules.enabled=false", "app.partitions.archive-after-months=0", "app.paging.max-size=50"})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionPagingApiTests {
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Test
+    void pageOfTheMaximumSizeIsServed() throws Exception {
+        mockMvc.perform(get("/api/transactions").param("size", "50"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/transactions").param("paging", "keyset").param("size", "50"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void sizeOverTheMaximumIsRejected() throws Exception {
+        mockMvc.perform(get("/api/transactions").param("size", "51"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/transactions").param("paging", "keyset").param("size", String.valueOf(Integer.MAX_VALUE)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/accounts/" + SENDER + "/transactions").param("size", "51"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void pageOutsideTheOffsetRangeIsRejected() throws Exception {
+        mockMvc.perform(get("/api/transactions").param("page", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/transactions").param("page", String.valueOf(Integer.MAX_VALUE)).param("size", "50"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,186 @@
+package polito.wa2.es_transazioni.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Runs the migrations on a real Postgres, loads a realistic amount of data and checks
+// with EXPLAIN that the filter/sort shapes of TransactionService are served by the indexes
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionQueryPlanTests {
+
+    @Container
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+                .dataSource(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword())
+                .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+                .load()
+                .migrate();
+
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            // monthly partitions for the seeded range, which ends in November 2024
+            statement.execute("""
+                    SELECT create_transactions_partition(month::date)
+                    FROM generate_series(DATE '2023-01-01', DATE '2024-12-01', INTERVAL '1 month') AS month
+                    """);
+            statement.execute("""
+                    INSERT INTO transactions (id, amount, currency, description, timestamp, sender_account, receiver_account)
+                    SELECT g,
+                           (random() * 100000000)::bigint,
+                           (ARRAY['EUR', 'USD', 'GBP', 'CHF', 'JPY', 'SEK', 'NOK', 'DKK'])[1 + g % 8],
+                           'Transaction ' || g,
+                           TIMESTAMP '2023-01-01' + (g * INTERVAL '5 minutes'),
+                           'IT60X05428111010000' || lpad((g % 20000)::text, 8, '0'),
+                           'DE89370400440' || lpad(((g * 7) % 20000)::text, 9, '0')
+                    FROM generate_series(1, 200000) AS g
+                    """);
+            statement.execute("ANALYZE transactions");
+        }
+    }
+
+    @Test
+    void currencyAndDateRangeSortedByTimestampUsesCurrencyIndex() throws SQLException {
+        String plan = explain("""
+                SELECT * FROM transactions
+                WHERE currency = 'EUR' AND timestamp >= '2024-01-01' AND timestamp <= '2024-01-31'
+                ORDER BY timestamp DESC, id DESC LIMIT 10
+                """);
+        assertThat(plan).contains("idx_transactions_currency_timestamp_id");
+    }
+
+    @Test
+    void dateRangeOnlyScansItsMonth() throws SQLException {
+        String plan = explain("""
+                SELECT * FROM transactions
+                WHERE currency = 'EUR' AND timestamp >= '2024-01-05' AND timestamp <= '2024-01-20'
+                ORDER BY timestamp DESC, id DESC LIMIT 10
+                """);
+        assertThat(plan).contains("transactions_y2024m01").doesNotContain("transactions_y2023m12", "transactions_y2024m02");
+    }
+
+    // Without a date range the (empty) default partition cannot be pruned, and the planner may sort it
+    // instead of reading its index; every month partition must still be read in index order
+    @Test
+    void defaultListingUsesTimestampIndex() throws SQLException {
+        String plan = explain("SELECT * FROM transactions ORDER BY timestamp DESC, id DESC LIMIT 10");
+        assertThat(monthScans(plan)).isNotEmpty().allMatch(scan -> scan.contains("idx_transactions_timestamp_id"));
+    }
+
+    @Test
+    void keysetSeekUsesTimestampIndex() throws SQLException {
+        String plan = explain("""
+                SELECT * FROM transactions
+                WHERE timestamp < '2024-06-01' OR (timestamp = '2024-06-01' AND id < 150000)
+                ORDER BY timestamp DESC, id DESC LIMIT 10
+                """);
+        assertThat(monthScans(plan)).isNotEmpty().allMatch(scan -> scan.contains("idx_transactions_timestamp_id"));
+    }
+
+    @Test
+    void rowsOfAMonthWithoutPartitionMoveToItsPartitionWhenItIsCreated() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO transactions (id, amount, currency, description, timestamp, sender_account, receiver_account)
+                    VALUES (900000001, 100, 'EUR', 'Backdated', TIMESTAMP '2022-06-15 10:00', 'IT60X0542811101000000000001',
+                            'DE89370400440000000001')
+                    """);
+            assertThat(count(statement, "SELECT count(*) FROM transactions_default")).isEqualTo(1);
+
+            statement.execute("SELECT create_transactions_partition(DATE '2022-06-01')");
+            assertThat(count(statement, "SELECT count(*) FROM transactions_default")).isZero();
+            assertThat(count(statement, "SELECT count(*) FROM transactions_y2022m06 WHERE id = 900000001")).isEqualTo(1);
+        }
+    }
+
+    private static long count(Statement statement, String sql) throws SQLException {
+        try (ResultSet rows = statement.executeQuery(sql)) {
+            rows.next();
+            return rows.getLong(1);
+        }
+    }
+
+    // Plan lines that read one of the monthly partitions
+    private static List<String> monthScans(String plan) {
+        return plan.lines().filter(line -> line.contains(" on transactions_y")).toList();
+    }
+
+    @Test
+    void narrowAmountRangeUsesAmountIndex() throws SQLException {
+        String plan = explain("SELECT * FROM transactions WHERE amount >= 1000000 AND amount <= 1010000");
+        assertThat(plan).contains("idx_transactions_amount_id");
+    }
+
+    @Test
+    void accountStatementUsesAccountIndexes() throws SQLException {
+        String sender = explain("""
+                SELECT * FROM transactions WHERE sender_account = 'IT60X0542811101000000000042'
+                ORDER BY timestamp DESC, id DESC LIMIT 100
+                """);
+        String receiver = explain("""
+                SELECT * FROM transactions WHERE receiver_account = 'DE89370400440000000042'
+                ORDER BY timestamp DESC, id DESC LIMIT 100
+                """);
+        assertThat(sender).contains("idx_transactions_sender_account_timestamp_id");
+        assertThat(receiver).contains("idx_transactions_receiver_account_timestamp_id");
+    }
+
+    @Test
+    void accountStatementBothDirectionsMergesIndexScans() throws SQLException {
+        String plan = explain("""
+                (SELECT * FROM transactions
+                 WHERE sender_account = 'IT60X0542811101000000000042' AND (timestamp, id) < ('9999-12-31', 9223372036854775807)
+                 ORDER BY timestamp DESC, id DESC LIMIT 101)
+                UNION
+                (SELECT * FROM transactions
+                 WHERE receiver_account = 'IT60X0542811101000000000042' AND (timestamp, id) < ('9999-12-31', 9223372036854775807)
+                 ORDER BY timestamp DESC, id DESC LIMIT 101)
+                ORDER BY timestamp DESC, id DESC LIMIT 101
+                """);
+        assertThat(plan)
+                .contains("idx_transactions_sender_account_timestamp_id")
+                .contains("idx_transactions_receiver_account_timestamp_id")
+                .doesNotContain("Seq Scan");
+    }
+
+    @Test
+    void descriptionSearchUsesFullTextIndex() throws SQLException {
+        String plan = explain("""
+                SELECT * FROM transactions
+                WHERE (to_tsvector('simple', description) @@ websearch_to_tsquery('simple', '4242')) = true
+                  AND currency = 'EUR'
+                """);
+        assertThat(plan).contains("idx_transactions_description_fts");
+    }
+
+    private static String explain(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("EXPLAIN " + sql)) {
+            while (rows.next()) {
+                plan.append(rows.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(postgres.getJdbcUrl(), postgres.getUsername(), postgres.getPassword());
+    }
+}
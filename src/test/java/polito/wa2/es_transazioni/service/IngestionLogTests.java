@@ -0,0 +1,84 @@
+package polito.wa2.es_transazioni.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import polito.wa2.es_transazioni.DTOs.TransactionDTO;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionLogTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @TempDir
+    Path directory;
+
+    private static IngestionLog.Entry entry(long seq) {
+        TransactionDTO transaction = new TransactionDTO();
+        transaction.setAmount(new BigDecimal("10.00"));
+        transaction.setCurrency("EUR");
+        transaction.setSenderAccount("IT60X0542811101000000123456");
+        transaction.setReceiverAccount("DE89370400440532013000");
+        transaction.setTimestamp(LocalDateTime.of(2025, 1, 1, 12, 0));
+        transaction.setDescription("entry " + seq);
+        return new IngestionLog.Entry(seq, "tracking-" + seq, transaction);
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).count();
+        }
+    }
+
+    @Test
+    void rollsSegmentsAndDeletesTheOnesTheCheckpointCovers() throws IOException {
+        // every entry is bigger than a segment, so each one starts a new segment
+        try (IngestionLog log = new IngestionLog(objectMapper, directory, false, 1)) {
+            log.open(1);
+            for (long seq = 1; seq <= 5; seq++) {
+                log.append(entry(seq));
+            }
+            assertThat(segmentCount()).isEqualTo(5);
+
+            log.deleteCovered(3);
+            assertThat(segmentCount()).isEqualTo(2);
+            assertThat(log.readPending(3)).extracting(IngestionLog.Entry::seq).containsExactly(4L, 5L);
+
+            // the segment being appended to stays
+            log.deleteCovered(5);
+            assertThat(segmentCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void keepsItsIdAndReplaysTheEntriesPastTheCheckpointAfterARestart() throws IOException {
+        String id;
+        try (IngestionLog log = new IngestionLog(objectMapper, directory, true, 1024 * 1024)) {
+            id = log.id();
+            log.open(1);
+            for (long seq = 1; seq <= 3; seq++) {
+                log.append(entry(seq));
+            }
+            log.sync(3);
+        }
+
+        try (IngestionLog log = new IngestionLog(objectMapper, directory, true, 1024 * 1024)) {
+            assertThat(log.id()).isEqualTo(id);
+            assertThat(log.readPending(1)).extracting(IngestionLog.Entry::trackingId)
+                    .containsExactly("tracking-2", "tracking-3");
+            log.open(4);
+            log.append(entry(4));
+            log.deleteCovered(3);
+            assertThat(log.readPending(3)).extracting(IngestionLog.Entry::seq).containsExactly(4L);
+        }
+    }
+}
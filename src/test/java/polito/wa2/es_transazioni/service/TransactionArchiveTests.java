@@ -0,0 +1,122 @@
+package polito.wa2.es_transazioni.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// A month past app.partitions.archive-after-months goes through the whole archive: its rows move from the
+// default partition to their own, the partition is detached, written to a gzipped NDJSON file and dropped;
+// the rows are then only found through the archive search and the month takes no new writes
+@SpringBootTest(properties = {"app.rules.enabled=false", "app.partitions.archive-after-months=1"})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionArchiveTests {
+
+    private static final String SENDER = "IT60X0542811101000000123456";
+    private static final String RECEIVER = "DE89370400440532013000";
+    private static final Pattern FILE_NAME = Pattern.compile("transactions-(\\d{4}-\\d{2})-(\\d+)\\.ndjson\\.gz");
+
+    @Container
+    @ServiceConnection
+    static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15");
+
+    @TempDir
+    static Path archiveDir;
+
+    @DynamicPropertySource
+    static void archiveDir(DynamicPropertyRegistry registry) {
+        registry.add("app.archive.dir", archiveDir::toString);
+    }
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionPartitionService partitionService;
+
+    @Autowired
+    TransactionArchive archive;
+
+    @Test
+    void monthPastTheRetentionIsArchivedSearchableAndClosed() throws Exception {
+        YearMonth month = YearMonth.now().minusMonths(3);
+        LocalDateTime start = month.atDay(1).atStartOfDay();
+        // rows of a month the API no longer accepts, as if written before it aged out; with no partition of
+        // their own they land in the default partition
+        for (int i = 1; i <= 3; i++) {
+            jdbcTemplate.update("""
+                    INSERT INTO transactions (id, amount, currency, description, timestamp, sender_account, receiver_account)
+                    VALUES (?, ?, 'EUR', 'archived', ?, ?, ?)""",
+                    900_000_000L + i, i * 10_000L, start.plusDays(i), SENDER, RECEIVER);
+        }
+
+        partitionService.maintain();
+
+        // one file for the month, holding every row
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(archiveDir)) {
+            files = listing.filter(file -> FILE_NAME.matcher(file.getFileName().toString()).matches()).toList();
+        }
+        assertThat(files).hasSize(1);
+        Matcher matcher = FILE_NAME.matcher(files.get(0).getFileName().toString());
+        assertThat(matcher.matches()).isTrue();
+        assertThat(matcher.group(1)).isEqualTo(month.toString());
+        assertThat(archive.count(month, Long.parseLong(matcher.group(2)))).isEqualTo(3);
+
+        // neither the partition nor the detached table is left
+        String partition = String.format("transactions_y%04dm%02d", month.getYear(), month.getMonthValue());
+        assertThat(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NULL", Boolean.class, partition)).isTrue();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_class WHERE relname ~ '^transactions_archiving_'", Long.class)).isZero();
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM transactions WHERE timestamp >= ? AND timestamp < ?",
+                Long.class, start, start.plusMonths(1))).isZero();
+
+        MvcResult search = mockMvc.perform(get("/api/transactions/archive")
+                        .param("startDate", start.toString()).param("endDate", start.plusMonths(1).toString()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String found = mockMvc.perform(asyncDispatch(search))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(found.lines().toList()).hasSize(3)
+                .anyMatch(line -> line.contains("\"id\":900000001"))
+                .anyMatch(line -> line.contains("\"id\":900000003"));
+
+        mockMvc.perform(post("/api/transactions").contentType(MediaType.APPLICATION_JSON).content("""
+                        {"amount": "5.00", "currency": "EUR", "description": "too late", "timestamp": "%s",
+                         "senderAccount": "%s", "receiverAccount": "%s"}""".formatted(start.plusDays(5), SENDER, RECEIVER)))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,85 @@
+package polito.wa2.es_transazioni.service.rules;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionRuleEngineTests {
+
+    private static final String SENDER = "IT60X0542811101000000123456";
+    private static final String RECEIVER = "DE89370400440532013000";
+    private static final long MINUTE = 60_000;
+
+    // 3 transfers or 100.00 per sender and currency over 10 minutes; duplicates within 1 minute
+    private final TransactionRuleEngine engine = new TransactionRuleEngine(List.of(
+            new DuplicateTransferRule(Duration.ofMinutes(1), 1_000),
+            new SenderVelocityRule(Duration.ofMinutes(10), 10, 3, new BigDecimal("100.00"), 1_000)));
+
+    private static Transfer transfer(String amount) {
+        return new Transfer(SENDER, RECEIVER, "EUR", new BigDecimal(amount).movePointRight(4).longValueExact());
+    }
+
+    @Test
+    void rejectsTheTransferOverTheCountUntilTheWindowSlides() {
+        long now = 100 * MINUTE;
+        engine.check(transfer("1"), now);
+        engine.check(transfer("2"), now + MINUTE);
+        engine.check(transfer("3"), now + 2 * MINUTE);
+
+        assertThatThrownBy(() -> engine.check(transfer("4"), now + 3 * MINUTE))
+                .isInstanceOf(TransactionRejectedException.class)
+                .extracting("rule").isEqualTo("sender-velocity");
+        // the first transfer has left the window
+        assertThatNoException().isThrownBy(() -> engine.check(transfer("4"), now + 10 * MINUTE));
+    }
+
+    @Test
+    void rejectsTheTransferOverTheTotalAmount() {
+        long now = 100 * MINUTE;
+        engine.check(transfer("60.00"), now);
+
+        assertThatThrownBy(() -> engine.check(transfer("40.01"), now + MINUTE))
+                .isInstanceOf(TransactionRejectedException.class)
+                .extracting("rule").isEqualTo("sender-velocity");
+        assertThatNoException().isThrownBy(() -> engine.check(transfer("40.00"), now + MINUTE));
+    }
+
+    @Test
+    void rejectsADuplicateWithoutCountingIt() {
+        long now = 100 * MINUTE;
+        engine.check(transfer("10"), now);
+
+        assertThatThrownBy(() -> engine.check(transfer("10"), now + 1_000))
+                .isInstanceOf(TransactionRejectedException.class)
+                .extracting("rule").isEqualTo("duplicate-transfer");
+        engine.check(transfer("11"), now + 2_000);
+        engine.check(transfer("12"), now + 3_000);
+    }
+
+    @Test
+    void acceptsADuplicateAgainOnceTheIntervalHasPassed() {
+        long now = 100 * MINUTE;
+        engine.check(transfer("10"), now);
+
+        assertThatThrownBy(() -> engine.check(transfer("10"), now + MINUTE - 1))
+                .isInstanceOf(TransactionRejectedException.class)
+                .extracting("rule").isEqualTo("duplicate-transfer");
+        assertThatNoException().isThrownBy(() -> engine.check(transfer("10"), now + MINUTE));
+    }
+
+    @Test
+    void revertedTransfersNoLongerCount() {
+        long now = 100 * MINUTE;
+        engine.check(transfer("1"), now);
+        engine.check(transfer("2"), now);
+        engine.check(transfer("3"), now);
+        engine.revert(transfer("3"), now);
+
+        assertThatNoException().isThrownBy(() -> engine.check(transfer("3"), now));
+    }
+}